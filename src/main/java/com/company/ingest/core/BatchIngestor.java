@@ -0,0 +1,201 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.IngestSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ingests many uploads with a fixed number of worker threads
+ *
+ * Each worker takes the next item, opens its source, ingests it and closes
+ * it before moving on, so at most {@code parallelism} sources, spool files
+ * and replays are open at any time regardless of batch size. Workers reuse
+ * their SHA-256 instance and draw chunks from the shared buffer pool.
+ *
+ * A failing item is recorded in its {@link Outcome} and does not stop the
+ * rest of the batch. The sink is called from several threads at once and
+ * must be thread-safe.
+ */
+public class BatchIngestor {
+    
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+    
+    private final Ingestor ingestor;
+    private final int parallelism;
+    
+    /**
+     * One worker per available processor
+     */
+    public BatchIngestor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public BatchIngestor(int parallelism) {
+        this(new Ingestor(), parallelism);
+    }
+    
+    public BatchIngestor(Ingestor ingestor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.ingestor = ingestor;
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Ingest every item and wait for the whole batch
+     *
+     * @return one outcome per item, in the order the items were given
+     */
+    public List<Outcome> ingestAll(Collection<Item> items, IngestConfig config,
+                                   IngestSink sink) throws IOException {
+        List<Item> pending = new ArrayList<>(items);
+        Outcome[] outcomes = new Outcome[pending.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Error> fatal = new AtomicReference<>();
+        
+        Runnable worker = () -> {
+            int index;
+            while (fatal.get() == null
+                    && !Thread.currentThread().isInterrupted()
+                    && (index = next.getAndIncrement()) < pending.size()) {
+                try {
+                    outcomes[index] = ingestOne(pending.get(index), config, sink);
+                } catch (Error e) {
+                    fatal.compareAndSet(null, e);
+                }
+            }
+        };
+        
+        int workerCount = Math.min(parallelism, pending.size());
+        List<Thread> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Thread thread = new Thread(worker, "ingest-batch-" + WORKER_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+        
+        try {
+            for (Thread thread : workers) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            // Let running items finish, but start no new ones
+            workers.forEach(Thread::interrupt);
+            joinUninterruptibly(workers);
+            Thread.currentThread().interrupt();
+            throw new IngestException("Batch ingest interrupted", e);
+        }
+        
+        if (fatal.get() != null) {
+            throw fatal.get();
+        }
+        return Arrays.asList(outcomes);
+    }
+    
+    private Outcome ingestOne(Item item, IngestConfig config, IngestSink sink) {
+        try (ByteSource source = item.opener.open()) {
+            return new Outcome(item.meta, ingestor.ingestAndReport(item.meta, config, source, sink), null);
+        } catch (IOException | RuntimeException e) {
+            return new Outcome(item.meta, null, e);
+        }
+    }
+    
+    private static void joinUninterruptibly(List<Thread> workers) {
+        for (Thread thread : workers) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ignored) {
+                    // Keep waiting; the caller's interrupt status is restored afterwards
+                }
+            }
+        }
+    }
+    
+    /**
+     * Opens an item's source when a worker gets to it
+     */
+    @FunctionalInterface
+    public interface SourceOpener {
+        ByteSource open() throws IOException;
+    }
+    
+    /**
+     * One upload in a batch
+     *
+     * Opening is deferred so that large batches do not hold a file
+     * descriptor per item while they wait.
+     */
+    public static class Item {
+        private final UploadMeta meta;
+        private final SourceOpener opener;
+        
+        public Item(UploadMeta meta, SourceOpener opener) {
+            this.meta = meta;
+            this.opener = opener;
+        }
+        
+        /**
+         * Item for a source that is already open; it is closed once ingested
+         */
+        public static Item of(UploadMeta meta, ByteSource source) {
+            return new Item(meta, () -> source);
+        }
+        
+        public UploadMeta getMeta() {
+            return meta;
+        }
+    }
+    
+    /**
+     * What happened to one item: a result if ingest ran to the end, else the failure
+     */
+    public static class Outcome {
+        private final UploadMeta meta;
+        private final IngestResult result;
+        private final Exception failure;
+        
+        Outcome(UploadMeta meta, IngestResult result, Exception failure) {
+            this.meta = meta;
+            this.result = result;
+            this.failure = failure;
+        }
+        
+        public UploadMeta getMeta() {
+            return meta;
+        }
+        
+        /**
+         * Result handed to the sink, or null if ingest failed
+         */
+        public IngestResult getResult() {
+            return result;
+        }
+        
+        /**
+         * Why ingest failed, or null if it completed
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+        
+        /**
+         * Ingest completed and the upload passed validation
+         */
+        public boolean isAccepted() {
+            return result != null && result.isOk();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.company.ingest.core;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * Feeds every chunk to a 32-bit checksum such as CRC32C
+ *
+ * The result is the checksum value as four big-endian bytes.
+ */
+class ChecksumStage implements HashStage {
+    private final String algorithm;
+    private final Checksum checksum;
+    private byte[] result;
+    
+    ChecksumStage(String algorithm, Checksum checksum) {
+        this.algorithm = algorithm;
+        this.checksum = checksum;
+    }
+    
+    @Override
+    public void accept(ByteBuffer chunk) {
+        checksum.update(chunk);
+    }
+    
+    @Override
+    public void finish() {
+        result = ByteBuffer.allocate(4).putInt((int) checksum.getValue()).array();
+    }
+    
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+    
+    @Override
+    public byte[] result() {
+        return result;
+    }
+}
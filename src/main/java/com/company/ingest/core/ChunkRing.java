@@ -0,0 +1,185 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer, multi-consumer ring of pooled chunk buffers.
+ *
+ * The producer claims the next slot, fills it and publishes it by advancing
+ * a sequence counter. Each consumer follows the published sequence at its
+ * own pace through a private view of every slot, and a slot is reused only
+ * once every consumer has moved past it. Coordination is through volatile
+ * counters alone; waiting threads spin briefly and then park.
+ */
+class ChunkRing {
+    
+    private static final int SPIN_LIMIT = 100;
+    private static final int YIELD_LIMIT = 200;
+    private static final long PARK_NANOS = 20_000;
+    
+    private final BufferPool.Lease[] leases;
+    private final ByteBuffer[] slots;
+    private final ByteBuffer[][] views;
+    private final int[] lengths;
+    
+    // Number of slots published by the producer / processed by each consumer
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong[] consumed;
+    
+    private volatile boolean ended = false;
+    private volatile boolean aborted = false;
+    private volatile Throwable failure;
+    
+    ChunkRing(int depth, int chunkSize, boolean direct, int consumers) {
+        BufferPool pool = BufferPool.shared();
+        this.leases = new BufferPool.Lease[depth];
+        this.slots = new ByteBuffer[depth];
+        this.views = new ByteBuffer[consumers][depth];
+        this.lengths = new int[depth];
+        this.consumed = new AtomicLong[consumers];
+        
+        for (int i = 0; i < depth; i++) {
+            leases[i] = direct ? pool.leaseDirect(chunkSize) : pool.lease(chunkSize);
+            slots[i] = leases[i].buffer();
+            slots[i].limit(chunkSize);
+            for (int c = 0; c < consumers; c++) {
+                views[c][i] = slots[i].duplicate();
+            }
+        }
+        for (int c = 0; c < consumers; c++) {
+            consumed[c] = new AtomicLong();
+        }
+    }
+    
+    /**
+     * Producer: wait for the next slot to be free of every consumer and return it cleared
+     */
+    ByteBuffer claim() throws IOException {
+        long sequence = published.get();
+        long mustHaveConsumed = sequence - slots.length + 1;
+        
+        for (AtomicLong consumer : consumed) {
+            int idle = 0;
+            while (consumer.get() < mustHaveConsumed) {
+                checkFailure();
+                idle(idle++);
+            }
+        }
+        
+        ByteBuffer slot = slots[index(sequence)];
+        slot.clear();
+        return slot;
+    }
+    
+    /**
+     * Producer: hand the claimed slot, holding bytes from 0 to its limit, to the consumers
+     */
+    void publish(ByteBuffer slot) throws IOException {
+        checkFailure();
+        long sequence = published.get();
+        lengths[index(sequence)] = slot.limit();
+        published.set(sequence + 1);
+    }
+    
+    /**
+     * Producer: no more slots will be published
+     */
+    void end() {
+        ended = true;
+    }
+    
+    /**
+     * Any thread: stop all consumers without finishing their stages
+     */
+    void abort() {
+        aborted = true;
+    }
+    
+    /**
+     * Consumer {@code consumer}: feed every published slot to {@code stage} until the end
+     */
+    void consume(int consumer, ChunkStage stage) {
+        try {
+            long next = 0;
+            while (true) {
+                long available = published.get();
+                int idle = 0;
+                while (available <= next) {
+                    if (aborted) {
+                        return;
+                    }
+                    if (ended) {
+                        // Re-read: the producer publishes before it ends
+                        available = published.get();
+                        if (available <= next) {
+                            stage.finish();
+                            return;
+                        }
+                        break;
+                    }
+                    idle(idle++);
+                    available = published.get();
+                }
+                
+                for (; next < available; next++) {
+                    if (aborted) {
+                        return;
+                    }
+                    int index = index(next);
+                    ByteBuffer view = views[consumer][index];
+                    view.clear().limit(lengths[index]);
+                    stage.accept(view);
+                    consumed[consumer].set(next + 1);
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            aborted = true;
+        }
+    }
+    
+    /**
+     * Rethrow a consumer failure on the producer side
+     */
+    void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause == null) {
+            return;
+        }
+        if (cause instanceof IOException) {
+            throw new IngestException("Pipeline stage failed: " + cause.getMessage(), cause);
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IngestException("Pipeline stage failed", cause);
+    }
+    
+    /**
+     * Return the slot buffers to the pool; only once no thread uses the ring
+     */
+    void release() {
+        for (BufferPool.Lease lease : leases) {
+            lease.close();
+        }
+    }
+    
+    private int index(long sequence) {
+        return (int) (sequence % slots.length);
+    }
+    
+    private static void idle(int iteration) {
+        if (iteration < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (iteration < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
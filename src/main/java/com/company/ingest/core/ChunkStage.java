@@ -0,0 +1,32 @@
+package com.company.ingest.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * One consumer of the chunks read during the processing pass (hashing, spooling, ...)
+ *
+ * A stage sees every chunk exactly once and in order, but may run on a
+ * different thread from the reader; stages must not share mutable state.
+ */
+interface ChunkStage {
+    
+    /**
+     * Consume the bytes between the chunk's position and limit
+     */
+    void accept(ByteBuffer chunk) throws IOException;
+    
+    /**
+     * Called once after the last chunk
+     */
+    default void finish() throws IOException {
+    }
+    
+    /**
+     * The upload is certain to be rejected; output may be dropped from here on
+     *
+     * Called from the reader thread, possibly while {@link #accept} runs elsewhere.
+     */
+    default void requestDiscard() {
+    }
+}
@@ -0,0 +1,36 @@
+package com.company.ingest.core;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Feeds every chunk to a MessageDigest
+ */
+class DigestStage implements HashStage {
+    private final MessageDigest digest;
+    private byte[] result;
+    
+    DigestStage(MessageDigest digest) {
+        this.digest = digest;
+    }
+    
+    @Override
+    public void accept(ByteBuffer chunk) {
+        digest.update(chunk);
+    }
+    
+    @Override
+    public void finish() {
+        result = digest.digest();
+    }
+    
+    @Override
+    public String algorithm() {
+        return digest.getAlgorithm();
+    }
+    
+    @Override
+    public byte[] result() {
+        return result;
+    }
+}
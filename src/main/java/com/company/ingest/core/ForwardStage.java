@@ -0,0 +1,33 @@
+package com.company.ingest.core;
+
+import com.company.ingest.sink.IngestSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Streams every chunk to a sink upload, until the upload is known to be rejected
+ *
+ * Once a discard is requested there is no point sending the sink more bytes
+ * it will be told to abort; the verdict itself is delivered by the Ingestor.
+ */
+class ForwardStage implements ChunkStage {
+    private final IngestSink.Upload upload;
+    private volatile boolean discardRequested = false;
+    
+    ForwardStage(IngestSink.Upload upload) {
+        this.upload = upload;
+    }
+    
+    @Override
+    public void accept(ByteBuffer chunk) throws IOException {
+        if (!discardRequested) {
+            upload.write(chunk);
+        }
+    }
+    
+    @Override
+    public void requestDiscard() {
+        discardRequested = true;
+    }
+}
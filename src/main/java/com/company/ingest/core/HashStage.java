@@ -0,0 +1,17 @@
+package com.company.ingest.core;
+
+/**
+ * Stage that hashes every chunk under one named algorithm
+ */
+interface HashStage extends ChunkStage {
+    
+    /**
+     * Canonical algorithm name, as in {@link com.company.ingest.model.DigestAlgorithms}
+     */
+    String algorithm();
+    
+    /**
+     * Final digest; only valid after {@link #finish()}
+     */
+    byte[] result();
+}
@@ -0,0 +1,90 @@
+package com.company.ingest.core;
+
+import com.company.ingest.dedup.DedupIndex;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.IngestSink;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs every upload on its own virtual thread, for many concurrent slow uploads
+ *
+ * An upload waiting on its client parks its virtual thread instead of
+ * holding a platform thread, so idle uploads cost little more than their
+ * buffers. Two limits protect the shared resources behind them:
+ * the number of uploads spooling to temp files, and the number the sink
+ * is handling at once. Uploads over either limit wait on their own virtual
+ * thread until a permit frees up.
+ */
+public class IngestService implements AutoCloseable {
+    
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int maxDiskSpools;
+    private final int maxSinkCalls;
+    private final Semaphore spoolPermits;
+    private final Semaphore sinkPermits;
+    private final Ingestor ingestor;
+    
+    /**
+     * @param maxDiskSpools uploads allowed a temp-file spool at once; smaller uploads stay in memory
+     * @param maxSinkCalls  uploads the sink may handle at once
+     */
+    public IngestService(int maxDiskSpools, int maxSinkCalls) {
+        this(maxDiskSpools, maxSinkCalls, null);
+    }
+    
+    /**
+     * @param knownContent lets uploads with a known declared SHA-256 skip the read; may be null
+     * @see Ingestor#Ingestor(java.util.concurrent.Executor, DedupIndex)
+     */
+    public IngestService(int maxDiskSpools, int maxSinkCalls, DedupIndex knownContent) {
+        if (maxDiskSpools < 1 || maxSinkCalls < 1) {
+            throw new IllegalArgumentException(String.format(
+                "Limits must be at least 1: maxDiskSpools=%d, maxSinkCalls=%d",
+                maxDiskSpools, maxSinkCalls));
+        }
+        this.maxDiskSpools = maxDiskSpools;
+        this.maxSinkCalls = maxSinkCalls;
+        this.spoolPermits = new Semaphore(maxDiskSpools, true);
+        this.sinkPermits = new Semaphore(maxSinkCalls, true);
+        this.ingestor = new Ingestor(executor, knownContent, spoolPermits, sinkPermits);
+    }
+    
+    /**
+     * Start ingesting on a new virtual thread
+     *
+     * @see Ingestor#ingestAsync
+     */
+    public CompletableFuture<IngestResult> submit(UploadMeta meta, IngestConfig config,
+                                                  ByteSource source, IngestSink sink) {
+        return ingestor.ingestAsync(meta, config, source, sink);
+    }
+    
+    /**
+     * Uploads currently holding a temp-file spool
+     */
+    public int getActiveDiskSpools() {
+        return maxDiskSpools - spoolPermits.availablePermits();
+    }
+    
+    /**
+     * Uploads currently being handled by the sink
+     */
+    public int getActiveSinkCalls() {
+        return maxSinkCalls - sinkPermits.availablePermits();
+    }
+    
+    /**
+     * Stop accepting uploads and wait for those in flight to finish
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -0,0 +1,56 @@
+package com.company.ingest.core;
+
+import com.company.ingest.model.UploadMeta;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Snapshot of a resumable upload as of its last checkpoint
+ *
+ * Obtained from {@link IngestSessions}; pass it to
+ * {@link Ingestor#ingestResumable} with a source that starts at {@link #getOffset()}.
+ * A snapshot that no longer matches the session's checkpoint is refused, so
+ * take a fresh one after every failed attempt.
+ */
+public class IngestSession {
+    private final IngestSessions owner;
+    private final String id;
+    private final UploadMeta meta;
+    private final long offset;
+    private final Instant expiresAt;
+    
+    IngestSession(IngestSessions owner, String id, UploadMeta meta, long offset, Instant expiresAt) {
+        this.owner = owner;
+        this.id = id;
+        this.meta = meta;
+        this.offset = offset;
+        this.expiresAt = expiresAt;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public UploadMeta getMeta() {
+        return meta;
+    }
+    
+    /**
+     * Bytes safely received; the next attempt must send the upload from here on
+     */
+    public long getOffset() {
+        return offset;
+    }
+    
+    /**
+     * When the session is discarded unless another checkpoint is written first
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+    
+    IngestSessions.Attempt attach() throws IOException {
+        return owner.attach(id, offset);
+    }
+}
@@ -0,0 +1,412 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.io.FileByteSource;
+import com.company.ingest.mime.MimeDetector;
+import com.company.ingest.model.UploadMeta;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Store of resumable upload sessions, one directory per session
+ *
+ * A session directory holds the bytes received so far and a checkpoint:
+ * the upload's metadata, how many of those bytes are safely on disk, and
+ * the SHA-256 state after them. Checkpoints are written every
+ * {@code checkpointInterval} bytes and whenever an attempt fails, so a later
+ * attempt only needs the bytes from the checkpoint onwards. Bytes past the
+ * checkpoint (from a crash between checkpoints) are cut off on resume.
+ *
+ * A session expires {@code ttl} after its last checkpoint; expired sessions
+ * are deleted by {@link #purgeExpired()}, which {@link #create} also runs.
+ */
+public class IngestSessions {
+    
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 16L * 1024 * 1024;
+    
+    private static final int FORMAT_VERSION = 1;
+    private static final String DATA_FILE = "data";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final Pattern SESSION_ID = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}");
+    
+    private final Path directory;
+    private final Duration ttl;
+    private final long checkpointInterval;
+    private final Clock clock;
+    private final Set<String> attached = ConcurrentHashMap.newKeySet();
+    
+    public IngestSessions(Path directory, Duration ttl) throws IOException {
+        this(directory, ttl, DEFAULT_CHECKPOINT_INTERVAL, Clock.systemUTC());
+    }
+    
+    public IngestSessions(Path directory, Duration ttl, long checkpointInterval, Clock clock) throws IOException {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.ttl = ttl;
+        this.checkpointInterval = checkpointInterval;
+        this.clock = clock;
+    }
+    
+    /**
+     * Start a new session at offset zero
+     */
+    public IngestSession create(UploadMeta meta) throws IOException {
+        purgeExpired();
+        
+        String id = UUID.randomUUID().toString();
+        Path sessionDir = Files.createDirectory(directory.resolve(id));
+        Files.createFile(sessionDir.resolve(DATA_FILE));
+        
+        Checkpoint checkpoint = new Checkpoint(meta, 0, new ResumableSha256().exportState(), clock.millis());
+        writeCheckpoint(sessionDir, checkpoint);
+        return toSession(id, checkpoint);
+    }
+    
+    /**
+     * The session as of its last checkpoint, or empty if it is unknown, finished or expired
+     */
+    public Optional<IngestSession> find(String id) throws IOException {
+        Optional<Checkpoint> checkpoint = load(id);
+        if (checkpoint.isEmpty()) {
+            return Optional.empty();
+        }
+        if (isExpired(checkpoint.get()) && !attached.contains(id)) {
+            delete(id);
+            return Optional.empty();
+        }
+        return Optional.of(toSession(id, checkpoint.get()));
+    }
+    
+    /**
+     * Give up on a session and delete what it received
+     */
+    public void discard(String id) throws IOException {
+        if (attached.contains(id)) {
+            throw new IllegalStateException("Session is being ingested: " + id);
+        }
+        if (SESSION_ID.matcher(id).matches()) {
+            delete(id);
+        }
+    }
+    
+    /**
+     * Delete every expired session that is not being ingested
+     *
+     * @return number of sessions deleted
+     */
+    public int purgeExpired() throws IOException {
+        int purged = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(directory)) {
+            for (Path sessionDir : sessions) {
+                String id = sessionDir.getFileName().toString();
+                if (!SESSION_ID.matcher(id).matches() || attached.contains(id)) {
+                    continue;
+                }
+                
+                Optional<Checkpoint> checkpoint;
+                try {
+                    checkpoint = load(id);
+                } catch (IOException e) {
+                    checkpoint = Optional.empty(); // Unreadable; judge by age alone
+                }
+                long lastActivity = checkpoint.isPresent()
+                    ? checkpoint.get().updatedAtMillis
+                    : Files.getLastModifiedTime(sessionDir).toMillis();
+                if (clock.millis() - lastActivity >= ttl.toMillis()) {
+                    delete(id);
+                    purged++;
+                }
+            }
+        }
+        return purged;
+    }
+    
+    /**
+     * Take the session for one ingest attempt, positioned at its last checkpoint
+     *
+     * @param expectedOffset where the caller's source starts; a stale snapshot
+     *                       would append its bytes at the wrong place
+     */
+    Attempt attach(String id, long expectedOffset) throws IOException {
+        if (!attached.add(id)) {
+            throw new IllegalStateException("Session is already being ingested: " + id);
+        }
+        try {
+            Checkpoint checkpoint = load(id)
+                .filter(cp -> !isExpired(cp))
+                .orElseThrow(() -> new IngestException("Unknown or expired session: " + id));
+            if (checkpoint.offset != expectedOffset) {
+                throw new IngestException(String.format(
+                    "Session %s is at offset %d, not %d; resume from a fresh snapshot",
+                    id, checkpoint.offset, expectedOffset));
+            }
+            return new Attempt(id, directory.resolve(id), checkpoint);
+        } catch (IOException | RuntimeException e) {
+            attached.remove(id);
+            throw e;
+        }
+    }
+    
+    private boolean isExpired(Checkpoint checkpoint) {
+        return clock.millis() - checkpoint.updatedAtMillis >= ttl.toMillis();
+    }
+    
+    private IngestSession toSession(String id, Checkpoint checkpoint) {
+        return new IngestSession(this, id, checkpoint.meta, checkpoint.offset,
+                                 Instant.ofEpochMilli(checkpoint.updatedAtMillis).plus(ttl));
+    }
+    
+    private Optional<Checkpoint> load(String id) throws IOException {
+        if (!SESSION_ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        try (InputStream in = Files.newInputStream(directory.resolve(id).resolve(CHECKPOINT_FILE))) {
+            return Optional.of(Checkpoint.read(new DataInputStream(in)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+    
+    private void delete(String id) throws IOException {
+        Path sessionDir = directory.resolve(id);
+        if (!Files.isDirectory(sessionDir)) {
+            return;
+        }
+        // Includes partial checkpoints left behind by a crash
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sessionDir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(sessionDir);
+    }
+    
+    private static void writeCheckpoint(Path sessionDir, Checkpoint checkpoint) throws IOException {
+        // Write beside the checkpoint and rename, so a crash never leaves half of one
+        Path partial = Files.createTempFile(sessionDir, "checkpoint-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                DataOutputStream data = new DataOutputStream(out);
+                checkpoint.write(data);
+                data.flush();
+            }
+            Files.move(partial, sessionDir.resolve(CHECKPOINT_FILE),
+                       StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+    
+    /**
+     * One attempt at ingesting a session; owns the session until closed
+     *
+     * The stages from {@link #spoolStage()} and {@link #checkpointStage()}
+     * must follow the digest stage, so each chunk is hashed and written
+     * before it counts towards the checkpoint.
+     */
+    class Attempt implements AutoCloseable {
+        private final String id;
+        private final Path sessionDir;
+        private final UploadMeta meta;
+        private final long startOffset;
+        private final FileChannel data;
+        private final ResumableSha256 digest;
+        
+        private long consistentOffset;
+        private byte[] consistentState;
+        private long durableOffset;
+        private boolean completed = false;
+        
+        Attempt(String id, Path sessionDir, Checkpoint checkpoint) throws IOException {
+            this.id = id;
+            this.sessionDir = sessionDir;
+            this.meta = checkpoint.meta;
+            this.startOffset = checkpoint.offset;
+            this.digest = ResumableSha256.restore(checkpoint.digestState);
+            this.consistentOffset = checkpoint.offset;
+            this.consistentState = checkpoint.digestState;
+            this.durableOffset = checkpoint.offset;
+            
+            // Drop anything written after the checkpoint by an attempt that crashed
+            this.data = FileChannel.open(sessionDir.resolve(DATA_FILE), 
+                                         StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                data.truncate(startOffset);
+                data.position(startOffset);
+            } catch (IOException e) {
+                data.close();
+                throw e;
+            }
+        }
+        
+        UploadMeta meta() {
+            return meta;
+        }
+        
+        long offset() {
+            return startOffset;
+        }
+        
+        ResumableSha256 digest() {
+            return digest;
+        }
+        
+        /**
+         * Leading bytes already received, up to the MIME detection window
+         */
+        byte[] header() throws IOException {
+            int window = UploadObserver.detectionWindow(MimeDetector.registry());
+            int length = (int) Math.min(startOffset, window);
+            ByteBuffer header = ByteBuffer.allocate(length);
+            while (header.hasRemaining()) {
+                if (data.read(header, header.position()) < 0) {
+                    throw new IngestException("Session data shorter than its checkpoint: " + id);
+                }
+            }
+            return header.array();
+        }
+        
+        ChunkStage spoolStage() {
+            return chunk -> {
+                while (chunk.hasRemaining()) {
+                    data.write(chunk);
+                }
+            };
+        }
+        
+        ChunkStage checkpointStage() {
+            return chunk -> {
+                consistentOffset += chunk.remaining();
+                consistentState = digest.exportState();
+                if (consistentOffset - durableOffset >= checkpointInterval) {
+                    checkpoint();
+                }
+            };
+        }
+        
+        /**
+         * Make every fully processed chunk durable and record it in the checkpoint
+         */
+        void checkpoint() throws IOException {
+            data.force(false);
+            writeCheckpoint(sessionDir, new Checkpoint(meta, consistentOffset, consistentState, clock.millis()));
+            durableOffset = consistentOffset;
+        }
+        
+        /**
+         * All bytes received so far; the session keeps them until {@link #complete()}
+         */
+        ByteSource replay(long mapThreshold) throws IOException {
+            return new FileByteSource(sessionDir.resolve(DATA_FILE), false, mapThreshold);
+        }
+        
+        /**
+         * The sink has the upload; the session can go
+         */
+        void complete() {
+            completed = true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                data.close();
+                if (completed) {
+                    delete(id);
+                }
+            } finally {
+                attached.remove(id);
+            }
+        }
+    }
+    
+    /**
+     * Persisted session state
+     */
+    private static class Checkpoint {
+        final UploadMeta meta;
+        final long offset;
+        final byte[] digestState;
+        final long updatedAtMillis;
+        
+        Checkpoint(UploadMeta meta, long offset, byte[] digestState, long updatedAtMillis) {
+            this.meta = meta;
+            this.offset = offset;
+            this.digestState = digestState;
+            this.updatedAtMillis = updatedAtMillis;
+        }
+        
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(FORMAT_VERSION);
+            writeNullable(out, meta.getFilename());
+            writeNullable(out, meta.getClaimedMime());
+            out.writeLong(meta.getContentLength().orElse(-1L));
+            out.writeInt(meta.getDeclaredDigests().size());
+            for (Map.Entry<String, String> digest : meta.getDeclaredDigests().entrySet()) {
+                out.writeUTF(digest.getKey());
+                out.writeUTF(digest.getValue());
+            }
+            out.writeLong(offset);
+            out.write(digestState);
+            out.writeLong(updatedAtMillis);
+        }
+        
+        static Checkpoint read(DataInputStream in) throws IOException {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IngestException("Unsupported session checkpoint version: " + version);
+            }
+            String filename = readNullable(in);
+            String claimedMime = readNullable(in);
+            long contentLength = in.readLong();
+            int digestCount = in.readInt();
+            Map<String, String> declared = new LinkedHashMap<>();
+            for (int i = 0; i < digestCount; i++) {
+                declared.put(in.readUTF(), in.readUTF());
+            }
+            UploadMeta meta = new UploadMeta(filename, claimedMime,
+                contentLength >= 0 ? Optional.of(contentLength) : Optional.empty(), declared);
+            
+            long offset = in.readLong();
+            byte[] digestState = new byte[ResumableSha256.STATE_SIZE];
+            in.readFully(digestState);
+            long updatedAtMillis = in.readLong();
+            return new Checkpoint(meta, offset, digestState, updatedAtMillis);
+        }
+        
+        private static void writeNullable(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+        
+        private static String readNullable(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
@@ -1,67 +1,460 @@
 package com.company.ingest.core;
 
+import com.company.ingest.dedup.DedupEntry;
+import com.company.ingest.dedup.DedupIndex;
+import com.company.ingest.io.BufferPool;
 import com.company.ingest.io.ByteSource;
-import com.company.ingest.io.FileByteSource;
+import com.company.ingest.io.HybridSpool;
+import com.company.ingest.io.MemoryByteSource;
 import com.company.ingest.mime.MimeDetector;
+import com.company.ingest.mime.ZipInspector;
+import com.company.ingest.model.DigestAlgorithms;
 import com.company.ingest.model.IngestConfig;
 import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.TreeHash;
 import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.DuplicateAwareSink;
 import com.company.ingest.sink.IngestSink;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
 
+/**
+ * Validates uploads in a single pass and hands them to a sink
+ *
+ * {@link #ingestAsync} runs an upload on the configured executor; the
+ * blocking {@link #ingest} runs the same task on the calling thread.
+ */
 public class Ingestor {
+    
+    /**
+     * MessageDigest instances by algorithm, reused by every upload processed on the same thread
+     */
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = 
+        ThreadLocal.withInitial(HashMap::new);
+    
+    /** Shape of a SHA-256 as indexes store it; other declared values are never looked up */
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+    
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "ingest-async-" + WORKER_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final Executor executor;
+    private final DedupIndex knownContent;
+    private final Semaphore spoolPermits;
+    private final Semaphore sinkPermits;
+    
+    /**
+     * Asynchronous ingests run on a shared pool of daemon threads
+     */
+    public Ingestor() {
+        this(DEFAULT_EXECUTOR);
+    }
+    
+    /**
+     * @param executor runs asynchronous ingests; each one occupies a thread while it reads
+     */
+    public Ingestor(Executor executor) {
+        this(executor, null);
+    }
+    
+    /**
+     * @param knownContent consulted before reading when the client declares a SHA-256;
+     *                     content it knows is not read again. Null to always read.
+     */
+    public Ingestor(Executor executor, DedupIndex knownContent) {
+        this(executor, knownContent, null, null);
+    }
+    
+    /**
+     * @param spoolPermits held by each upload with a temp-file spool; null for no limit
+     * @param sinkPermits held while the sink handles an upload; null for no limit
+     */
+    Ingestor(Executor executor, DedupIndex knownContent, 
+             Semaphore spoolPermits, Semaphore sinkPermits) {
+        this.executor = executor;
+        this.knownContent = knownContent;
+        this.spoolPermits = spoolPermits;
+        this.sinkPermits = sinkPermits;
+    }
 
     public void ingest(UploadMeta meta, IngestConfig config, 
                       ByteSource source, IngestSink sink) throws IOException {
-        
-        Path tempFile = null;
+        ingestAndReport(meta, config, source, sink);
+    }
+    
+    /**
+     * Same as {@link #ingest}, also returning the result handed to the sink
+     */
+    IngestResult ingestAndReport(UploadMeta meta, IngestConfig config, 
+                                 ByteSource source, IngestSink sink) throws IOException {
+        CompletableFuture<IngestResult> task = start(meta, config, source, sink, Runnable::run);
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IngestException("Ingest failed", cause);
+        }
+    }
+    
+    /**
+     * Ingest on the configured executor
+     *
+     * The future completes with the result once the sink has it. Cancelling
+     * stops the read at the next chunk; the spool is deleted (or a streaming
+     * sink told to abort) and the sink is not given the upload. A read
+     * already blocked in the source finishes first. The caller still owns
+     * the source and closes it after the future completes.
+     */
+    public CompletableFuture<IngestResult> ingestAsync(UploadMeta meta, IngestConfig config, 
+                                                       ByteSource source, IngestSink sink) {
+        return start(meta, config, source, sink, executor);
+    }
+    
+    private CompletableFuture<IngestResult> start(UploadMeta meta, IngestConfig config, 
+                                                  ByteSource source, IngestSink sink, 
+                                                  Executor runner) {
+        CompletableFuture<IngestResult> task = new CompletableFuture<>();
+        BooleanSupplier cancelled = task::isCancelled;
         
         try {
-            tempFile = Files.createTempFile("ingest-", ".tmp");
+            runner.execute(() -> {
+                if (task.isDone()) {
+                    return; // Cancelled before it started
+                }
+                try {
+                    IngestResult known = ingestKnown(meta, config, sink);
+                    if (known != null) {
+                        task.complete(known);
+                        return;
+                    }
+                    task.complete(sink.supportsStreaming()
+                        ? ingestStreaming(meta, config, source, sink, cancelled)
+                        : ingestSpooled(meta, config, source, sink, cancelled));
+                } catch (NoSuchAlgorithmException e) {
+                    task.completeExceptionally(new IngestException("SHA-256 algorithm not available", e));
+                } catch (Throwable t) {
+                    task.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            task.completeExceptionally(e);
+        }
+        return task;
+    }
+    
+    /**
+     * Continue a resumable session with the bytes from its offset onwards
+     *
+     * The source must start at {@link IngestSession#getOffset()}, and that
+     * offset must still be the session's checkpoint; a stale snapshot is
+     * refused with an {@link IngestException} naming the current offset. If
+     * reading fails, everything received up to the failure is checkpointed and the
+     * exception is rethrown; call again with a fresh session snapshot and a
+     * source from the new offset. Once the source is exhausted the sink gets
+     * the whole upload, with the same result an uninterrupted ingest would
+     * give, and the session is deleted.
+     *
+     * Sessions always spool, so streaming sinks receive the upload through
+     * {@link IngestSink#persist}. The pass runs serially on the calling thread.
+     * Only SHA-256 can be checkpointed, so configs asking for other digests
+     * or a tree hash are rejected. ZIP and text classification cannot be
+     * checkpointed either; they are run over the spooled upload once it is
+     * complete, up to the point they settle, so the verdict matches an
+     * uninterrupted ingest.
+     */
+    public IngestResult ingestResumable(IngestSession session, IngestConfig config, 
+                                        ByteSource source, IngestSink sink) throws IOException {
+        if (!Set.of(DigestAlgorithms.SHA_256).containsAll(config.getDigests()) 
+                || config.getTreeLeafSize() > 0) {
+            throw new IllegalArgumentException(
+                "Resumable sessions compute SHA-256 only, not " + config.getDigests() 
+                + (config.getTreeLeafSize() > 0 ? " and a tree hash" : ""));
+        }
+        try (IngestSessions.Attempt attempt = session.attach()) {
+            UploadMeta meta = attempt.meta();
+            DigestStage digestStage = new DigestStage(attempt.digest());
+            List<ChunkStage> stages = List.of(digestStage, attempt.spoolStage(), attempt.checkpointStage());
             
-            // Process: compute hash, size, detect MIME, write to temp file
-            ProcessResult processResult = processSource(source, tempFile, config.getMaxContentLength());
+            ProcessResult processResult;
+            try (UploadObserver observer = new UploadObserver(meta, config, stages, () -> false)) {
+                observer.resume(attempt.header(), attempt.offset());
+                
+                boolean complete;
+                try {
+                    complete = new SerialPass(config).run(source, observer, stages);
+                } catch (IOException | RuntimeException e) {
+                    try {
+                        attempt.checkpoint();
+                    } catch (IOException checkpointFailure) {
+                        e.addSuppressed(checkpointFailure);
+                    }
+                    throw e;
+                }
+                observer.finish();
+                
+                String detectedMime = observer.detectedMime();
+                if (complete) {
+                    try (ByteSource spooled = attempt.replay(config.getReplayMapThreshold())) {
+                        detectedMime = refineSpooled(detectedMime, spooled, config.getChunkSize());
+                    }
+                }
+                processResult = new ProcessResult(detectedMime, observer.size(), 
+                                                  complete ? hexDigests(List.of(digestStage)) : Map.of(), 
+                                                  null, complete, observer.rejection());
+            }
             
-            List<String> errors = validate(meta, config, processResult);
+            // Keep the session resumable until the sink has taken the upload
+            attempt.checkpoint();
+            IngestResult result = toResult(meta, config, processResult);
             
-            boolean ok = errors.isEmpty();
-            IngestResult result = new IngestResult(
-                processResult.detectedMime,
-                processResult.size,
-                processResult.sha256,
-                ok,
-                errors
-            );
+            acquire(sinkPermits);
+            try (ByteSource replay = processResult.complete 
+                    ? attempt.replay(config.getReplayMapThreshold()) 
+                    : new MemoryByteSource(new byte[0])) {
+                sink.persist(meta, result, replay);
+            } finally {
+                release(sinkPermits);
+            }
             
-            // Forward to sink using temp file as source
-            try (FileByteSource replaySource = new FileByteSource(tempFile, true)) {
-                sink.persist(meta, result, replaySource);
+            attempt.complete();
+            return result;
+        }
+    }
+    
+    /**
+     * The ZIP and text refinement of {@link #processSource}, over an upload already received
+     *
+     * A header MIME is refined by at most one of the two stages, so only that
+     * one reads, and only until it is settled: a ZIP until its entries decide
+     * the type, anything else until the first byte that cannot be text.
+     */
+    private static String refineSpooled(String headerMime, ByteSource spooled, int chunkSize) 
+            throws IOException {
+        boolean zip = ZipInspector.isProvisional(headerMime);
+        if (!zip && !"application/octet-stream".equals(headerMime)) {
+            return headerMime;
+        }
+        
+        ZipInspectionStage zipStage = new ZipInspectionStage();
+        TextSniffStage textStage = new TextSniffStage();
+        ChunkStage stage = zip ? zipStage : textStage;
+        BooleanSupplier settled = zip ? zipStage::isSettled : textStage::isSettled;
+        try (BufferPool.Lease lease = BufferPool.shared().lease(chunkSize)) {
+            byte[] buffer = lease.array();
+            int bytesRead;
+            while (!settled.getAsBoolean() && (bytesRead = spooled.read(buffer, 0, buffer.length)) >= 0) {
+                stage.accept(ByteBuffer.wrap(buffer, 0, bytesRead));
+            }
+        }
+        return textStage.refine(zipStage.refine(headerMime));
+    }
+    
+    /**
+     * Settle an upload from its declared SHA-256 alone, without touching the source
+     *
+     * Only content the index already holds, and that would be accepted under
+     * this config, is settled here, and only for a
+     * {@link DuplicateAwareSink}, which gets {@link IngestSink#alreadyStored}.
+     * Any other sink has no record of the content, so it is read for it.
+     * Everything else, including a declared value that is not SHA-256 hex,
+     * returns null and is read as usual, which also verifies the declared digest. The index has
+     * to be trusted to hold only content this client may claim, since no
+     * bytes are seen. Only SHA-256 is known for stored content, so configs
+     * asking for further digests or a tree hash always read.
+     */
+    private IngestResult ingestKnown(UploadMeta meta, IngestConfig config, 
+                                     IngestSink sink) throws IOException {
+        if (knownContent == null || !(sink instanceof DuplicateAwareSink) || meta.getDeclaredSha256().isEmpty()
+                || !Set.of(DigestAlgorithms.SHA_256).containsAll(config.getDigests())
+                || config.getTreeLeafSize() > 0) {
+            return null;
+        }
+        
+        String declared = meta.getDeclaredSha256().get();
+        if (!SHA256_HEX.matcher(declared).matches()) {
+            return null;
+        }
+        Optional<DedupEntry> entry = knownContent.lookup(declared);
+        if (entry.isEmpty()) {
+            return null;
+        }
+        
+        ProcessResult stored = new ProcessResult(entry.get().getMime(), entry.get().getSize(), 
+                                                 Map.of(DigestAlgorithms.SHA_256, declared), 
+                                                 null, true, null);
+        IngestResult result = toResult(meta, config, stored);
+        if (!result.isOk()) {
+            return null;
+        }
+        
+        acquire(sinkPermits);
+        try {
+            sink.alreadyStored(meta, result);
+        } finally {
+            release(sinkPermits);
+        }
+        return result;
+    }
+    
+    /**
+     * Spool while processing, then replay the upload to the sink with its verdict
+     */
+    private IngestResult ingestSpooled(UploadMeta meta, IngestConfig config, 
+                                       ByteSource source, IngestSink sink, 
+                                       BooleanSupplier cancelled) 
+            throws IOException, NoSuchAlgorithmException {
+        
+        // Small uploads stay in memory; larger ones spill to a temp file
+        try (HybridSpool spool = new HybridSpool(config.getSpoolMemoryThreshold(), 
+                                                 config.getReplayMapThreshold(), 
+                                                 meta.getContentLength(), 
+                                                 spoolPermits)) {
+            
+            // Process: compute hash, size, detect MIME, write to spool
+            ProcessResult processResult = processSource(source, new SpoolStage(spool), 
+                                                         meta, config, cancelled);
+            checkCancelled(cancelled);
+            
+            if (!processResult.complete) {
+                // Nothing of a partial upload is worth forwarding
+                spool.discard();
             }
             
-            tempFile = null;
+            IngestResult result = toResult(meta, config, processResult);
             
+            // Forward to sink, replaying from memory or the temp file
+            acquire(sinkPermits);
+            try (ByteSource replaySource = spool.openReplay()) {
+                sink.persist(meta, result, replaySource);
+            } finally {
+                release(sinkPermits);
+            }
+            return result;
         }
-        catch (NoSuchAlgorithmException e) {
-            throw new IngestException("SHA-256 algorithm not available", e);
+    }
+    
+    /**
+     * Forward bytes to the sink while processing, then commit or abort on the verdict
+     */
+    private IngestResult ingestStreaming(UploadMeta meta, IngestConfig config, 
+                                         ByteSource source, IngestSink sink, 
+                                         BooleanSupplier cancelled) 
+            throws IOException, NoSuchAlgorithmException {
+        
+        // A streamed upload occupies the sink from begin to commit or abort
+        acquire(sinkPermits);
+        try {
+            return streamToSink(meta, config, source, sink, cancelled);
+        } finally {
+            release(sinkPermits);
         }
-        finally {
-            if (tempFile != null) {
-                try {
-                    Files.deleteIfExists(tempFile);
-                } catch (IOException e) {
-                    System.err.println("Warning: Failed to delete temp file: " + tempFile);
-                }
+    }
+    
+    private IngestResult streamToSink(UploadMeta meta, IngestConfig config, 
+                                      ByteSource source, IngestSink sink, 
+                                      BooleanSupplier cancelled) 
+            throws IOException, NoSuchAlgorithmException {
+        IngestSink.Upload upload = sink.begin(meta);
+        IngestResult result;
+        try {
+            ProcessResult processResult = processSource(source, new ForwardStage(upload), 
+                                                         meta, config, cancelled);
+            checkCancelled(cancelled);
+            result = toResult(meta, config, processResult);
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            try {
+                upload.abort(null);
+            } catch (IOException | RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
             }
+            throw e;
         }
+        
+        if (result.isOk()) {
+            upload.commit(result);
+        } else {
+            upload.abort(result);
+        }
+        return result;
+    }
+    
+    private static void acquire(Semaphore permits) throws IOException {
+        if (permits == null) {
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the sink");
+        }
+    }
+    
+    private static void release(Semaphore permits) {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+    
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Ingest cancelled");
+        }
+    }
+    
+    private IngestResult toResult(UploadMeta meta, IngestConfig config, ProcessResult processResult) {
+        List<String> errors = validate(meta, config, processResult);
+        
+        return new IngestResult(
+            processResult.detectedMime,
+            processResult.size,
+            processResult.digests.get(DigestAlgorithms.SHA_256),
+            errors.isEmpty(),
+            errors,
+            processResult.complete,
+            processResult.digests,
+            processResult.treeHash
+        );
     }
     
     /**
@@ -70,67 +463,129 @@ public class Ingestor {
     private static class ProcessResult {
         final String detectedMime;
         final long size;
-        final String sha256;
-        final byte[] header;
+        final Map<String, String> digests;
+        final TreeHash treeHash;
+        final boolean complete;
+        final String earlyRejection;
         
-        ProcessResult(String detectedMime, long size, String sha256, byte[] header) {
+        ProcessResult(String detectedMime, long size, Map<String, String> digests, TreeHash treeHash, 
+                      boolean complete, String earlyRejection) {
             this.detectedMime = detectedMime;
             this.size = size;
-            this.sha256 = sha256;
-            this.header = header;
+            this.digests = digests;
+            this.treeHash = treeHash;
+            this.complete = complete;
+            this.earlyRejection = earlyRejection;
         }
     }
     
     /**
-     * Read source once: compute hash, size, MIME, and write to temp file
+     * Read source once: compute digests, size, MIME, and hand every chunk to the output stage
+     *
+     * The pass works on ByteBuffers throughout. With direct buffers configured
+     * the source, digest and spool file channel all operate off-heap, so heap
+     * use per upload does not depend on the chunk size. The pipelined pass
+     * runs each digest and the output on their own threads, so the slowest
+     * digest sets the pace rather than the sum of them; both passes produce
+     * the same result.
+     *
+     * ZIP uploads are classified from their entry names as they stream past
+     * (see {@link com.company.ingest.mime.ZipInspector}), falling back to the
+     * header detection when the entries are inconclusive. Uploads no
+     * signature matches are checked for UTF-8 text, CSV and JSON (see
+     * {@link com.company.ingest.mime.TextSniffer}).
+     *
+     * As soon as the upload is certain to be rejected, the configured
+     * {@link com.company.ingest.model.FailFastPolicy} decides whether to stop
+     * reading, keep hashing without output, or carry on as normal.
      */
-    private ProcessResult processSource(ByteSource source, Path tempFile, long maxContentLength) 
+    private ProcessResult processSource(ByteSource source, ChunkStage outputStage, 
+                                        UploadMeta meta, IngestConfig config, 
+                                        BooleanSupplier cancelled) 
             throws IOException, NoSuchAlgorithmException {
         
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        long totalBytes = 0;
-        byte[] header = null;
+        List<HashStage> hashStages = hashStages(meta, config);
+        List<ChunkStage> stages = new ArrayList<>(hashStages);
+        TreeHashStage treeStage = config.getTreeLeafSize() > 0 
+            ? new TreeHashStage(config.getTreeLeafSize(), ForkJoinPool.commonPool()) 
+            : null;
+        if (treeStage != null) {
+            stages.add(treeStage);
+        }
+        ZipInspectionStage zipStage = new ZipInspectionStage();
+        stages.add(zipStage);
+        TextSniffStage textStage = new TextSniffStage();
+        stages.add(textStage);
+        stages.add(outputStage);
+        
+        ProcessingPass pass = config.isPipelined() ? new PipelinedPass(config) : new SerialPass(config);
         
-        try (OutputStream tempOut = Files.newOutputStream(tempFile)) {
+        try (UploadObserver observer = new UploadObserver(meta, config, stages, cancelled)) {
+            boolean complete = pass.run(source, observer, stages);
+            observer.finish();
             
-            byte[] chunk;
-            while ((chunk = source.nextChunk()).length > 0) {
-                
-                // Capture header for MIME detection (first 512 bytes)
-                if (header == null) {
-                    header = Arrays.copyOf(chunk, Math.min(chunk.length, 512));
-                } else if (header.length < 512) {
-                    byte[] extended = new byte[Math.min(512, header.length + chunk.length)];
-                    System.arraycopy(header, 0, extended, 0, header.length);
-                    System.arraycopy(chunk, 0, extended, header.length, 
-                                   Math.min(chunk.length, 512 - header.length));
-                    header = extended;
-                }
-                
-                // Update hash
-                digest.update(chunk);
-                
-                // Write to temp file
-                tempOut.write(chunk);
-                
-                // Track size
-                totalBytes += chunk.length;
-                
-                // Early exit if exceeding max (but still write to temp for completeness)
-                if (totalBytes > maxContentLength) {
-                    // Continue reading to completion but we know it's too large
-                }
+            // ZIP-based formats and text are only known once the whole upload has gone by
+            String detectedMime = complete 
+                ? textStage.refine(zipStage.refine(observer.detectedMime())) 
+                : observer.detectedMime();
+            
+            return new ProcessResult(detectedMime, observer.size(), 
+                                     complete ? hexDigests(hashStages) : Map.of(), 
+                                     complete && treeStage != null ? treeStage.result() : null, 
+                                     complete, observer.rejection());
+        }
+    }
+    
+    /**
+     * One stage per configured digest, plus any supported digest the client declared
+     *
+     * Declared digests are computed so they can be verified in the same pass;
+     * unsupported ones are reported by {@link #validate}.
+     */
+    private static List<HashStage> hashStages(UploadMeta meta, IngestConfig config) 
+            throws NoSuchAlgorithmException {
+        Set<String> algorithms = new LinkedHashSet<>(config.getDigests());
+        for (String declared : meta.getDeclaredDigests().keySet()) {
+            if (DigestAlgorithms.isSupported(declared)) {
+                algorithms.add(DigestAlgorithms.canonical(declared));
             }
         }
         
-        if (header == null) {
-            header = new byte[0];
+        List<HashStage> stages = new ArrayList<>(algorithms.size());
+        for (String algorithm : algorithms) {
+            switch (algorithm) {
+                case DigestAlgorithms.CRC32C -> stages.add(new ChecksumStage(algorithm, new CRC32C()));
+                case DigestAlgorithms.CRC32 -> stages.add(new ChecksumStage(algorithm, new CRC32()));
+                default -> stages.add(new DigestStage(digest(algorithm)));
+            }
         }
-        
-        String detectedMime = MimeDetector.detect(header);
-        String sha256Hex = bytesToHex(digest.digest());
-        
-        return new ProcessResult(detectedMime, totalBytes, sha256Hex, header);
+        return stages;
+    }
+    
+    /**
+     * The calling thread's instance of a digest, reset for a new upload
+     *
+     * The pipelined pass hands it to a lane, but only while this thread is
+     * blocked in that pass, so it is never used by two uploads at once.
+     */
+    private static MessageDigest digest(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest digest = digests.get(algorithm);
+        if (digest == null) {
+            digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+    
+    private static Map<String, String> hexDigests(List<? extends HashStage> stages) {
+        Map<String, String> digests = new LinkedHashMap<>();
+        for (HashStage stage : stages) {
+            digests.put(stage.algorithm(), bytesToHex(stage.result()));
+        }
+        return digests;
     }
     
     /**
@@ -139,8 +594,14 @@ public class Ingestor {
     private List<String> validate(UploadMeta meta, IngestConfig config, ProcessResult proc) {
         List<String> errors = new ArrayList<>();
         
+        // A fail-fast abort leaves the size unknown, so only the reason can be reported
+        if (!proc.complete) {
+            errors.add(String.format(
+                "Upload aborted after %d bytes: %s", proc.size, proc.earlyRejection));
+        }
+        
         // Check content length match if provided
-        if (meta.getContentLength().isPresent()) {
+        if (meta.getContentLength().isPresent() && proc.complete) {
             long expected = meta.getContentLength().get();
             if (proc.size != expected) {
                 errors.add(String.format(
@@ -149,6 +610,22 @@ public class Ingestor {
             }
         }
         
+        // Check the client's declared digests against the bytes actually read
+        if (proc.complete) {
+            for (Map.Entry<String, String> declared : meta.getDeclaredDigests().entrySet()) {
+                String algorithm = DigestAlgorithms.canonical(declared.getKey());
+                String computed = proc.digests.get(algorithm);
+                if (computed == null) {
+                    errors.add(String.format(
+                        "Declared %s digest could not be verified", declared.getKey()));
+                } else if (!declared.getValue().equals(computed)) {
+                    errors.add(String.format(
+                        "%s mismatch: declared %s, computed %s", 
+                        algorithm, declared.getValue(), computed));
+                }
+            }
+        }
+        
         // Check max content length
         if (proc.size > config.getMaxContentLength()) {
             errors.add(String.format(
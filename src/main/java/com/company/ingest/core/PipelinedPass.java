@@ -0,0 +1,132 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.model.IngestConfig;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs each stage on its own lane thread, fed by the reading thread through a {@link ChunkRing}
+ *
+ * The calling thread reads and observes chunks; hashing and spooling then
+ * overlap with each other and with the next read. Every stage still sees
+ * the same bytes in the same order, so results match {@link SerialPass}.
+ * Adaptive sources are honoured up to the configured chunk size.
+ */
+class PipelinedPass implements ProcessingPass {
+    
+    private static final AtomicInteger LANE_COUNTER = new AtomicInteger();
+    
+    private static final ExecutorService LANES = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "ingest-lane-" + LANE_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final IngestConfig config;
+    
+    PipelinedPass(IngestConfig config) {
+        this.config = config;
+    }
+    
+    @Override
+    public boolean run(ByteSource source, UploadObserver observer, 
+                       List<ChunkStage> stages) throws IOException {
+        int chunkSize = config.getChunkSize();
+        ChunkRing ring = new ChunkRing(config.getPipelineDepth(), chunkSize, 
+                                       config.isDirectBuffers(), stages.size());
+        List<Future<?>> lanes = new ArrayList<>(stages.size());
+        
+        try {
+            for (int i = 0; i < stages.size(); i++) {
+                int consumer = i;
+                ChunkStage stage = stages.get(i);
+                lanes.add(LANES.submit(() -> ring.consume(consumer, stage)));
+            }
+            
+            boolean complete = produce(source, observer, ring, chunkSize);
+            
+            awaitLanes(lanes);
+            ring.checkFailure();
+            return complete;
+        } catch (IOException | RuntimeException | Error e) {
+            ring.abort();
+            awaitLanesQuietly(lanes);
+            throw e;
+        } finally {
+            ring.release();
+        }
+    }
+    
+    /**
+     * Reader loop on the calling thread
+     */
+    private boolean produce(ByteSource source, UploadObserver observer, 
+                            ChunkRing ring, int chunkSize) throws IOException {
+        while (true) {
+            ByteBuffer slot = ring.claim();
+            int preferred = source.preferredChunkSize();
+            if (preferred > 0 && preferred < chunkSize) {
+                slot.limit(preferred);
+            }
+            
+            if (source.read(slot) == -1) {
+                ring.end();
+                return true;
+            }
+            slot.flip();
+            
+            boolean keepReading = observer.observe(slot);
+            if (!keepReading) {
+                // Stop without finishing the stages, like an early return from the serial loop
+                ring.abort();
+                return false;
+            }
+            ring.publish(slot);
+        }
+    }
+    
+    private static void awaitLanes(List<Future<?>> lanes) throws IOException {
+        for (Future<?> lane : lanes) {
+            try {
+                lane.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for pipeline lanes");
+            } catch (ExecutionException e) {
+                throw new IngestException("Pipeline lane failed", e.getCause());
+            }
+        }
+    }
+    
+    /**
+     * Wait for aborted lanes to exit before their buffers go back to the pool
+     */
+    private static void awaitLanesQuietly(List<Future<?>> lanes) {
+        boolean interrupted = false;
+        for (Future<?> lane : lanes) {
+            while (true) {
+                try {
+                    lane.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break; // The original failure is the one worth reporting
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.ByteSource;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Strategy for driving the single read over an upload
+ */
+interface ProcessingPass {
+    
+    /**
+     * Read {@code source} until EOF or until the observer stops it, showing each
+     * chunk to the observer first and then to every stage, which is finished at the end.
+     *
+     * @return true if the source was read to the end
+     */
+    boolean run(ByteSource source, UploadObserver observer, List<ChunkStage> stages) throws IOException;
+}
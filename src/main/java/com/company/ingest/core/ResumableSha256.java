@@ -0,0 +1,200 @@
+package com.company.ingest.core;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * SHA-256 whose intermediate state can be saved and restored (FIPS 180-4)
+ *
+ * The JDK digests cannot export their state, which a resumable session needs
+ * to carry across process restarts. This one is plain Java and slower than
+ * the JDK's intrinsic SHA-256, so it is only used for resumable sessions.
+ */
+final class ResumableSha256 extends MessageDigest {
+    
+    /**
+     * Size of {@link #exportState()}: eight hash words, byte count and one block
+     */
+    static final int STATE_SIZE = 8 * 4 + 8 + 64;
+    
+    private static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+    
+    private static final int[] INITIAL = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+    
+    private final int[] h = new int[8];
+    private final int[] w = new int[64];
+    private final byte[] block = new byte[64];
+    private int blockLength;
+    private long byteCount;
+    
+    ResumableSha256() {
+        super("SHA-256");
+        engineReset();
+    }
+    
+    /**
+     * Continue a digest from a state saved by {@link #exportState()}
+     */
+    static ResumableSha256 restore(byte[] state) {
+        if (state.length != STATE_SIZE) {
+            throw new IllegalArgumentException("Expected " + STATE_SIZE + " state bytes, got " + state.length);
+        }
+        ResumableSha256 digest = new ResumableSha256();
+        ByteBuffer in = ByteBuffer.wrap(state);
+        for (int i = 0; i < 8; i++) {
+            digest.h[i] = in.getInt();
+        }
+        digest.byteCount = in.getLong();
+        in.get(digest.block);
+        digest.blockLength = (int) (digest.byteCount & 63);
+        return digest;
+    }
+    
+    /**
+     * Snapshot of everything hashed so far
+     */
+    byte[] exportState() {
+        ByteBuffer out = ByteBuffer.allocate(STATE_SIZE);
+        for (int word : h) {
+            out.putInt(word);
+        }
+        out.putLong(byteCount);
+        out.put(block);
+        return out.array();
+    }
+    
+    /**
+     * Bytes hashed so far
+     */
+    long byteCount() {
+        return byteCount;
+    }
+    
+    @Override
+    protected int engineGetDigestLength() {
+        return 32;
+    }
+    
+    @Override
+    protected void engineUpdate(byte input) {
+        block[blockLength++] = input;
+        byteCount++;
+        if (blockLength == 64) {
+            compress(block, 0);
+            blockLength = 0;
+        }
+    }
+    
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int length) {
+        byteCount += length;
+        
+        if (blockLength > 0) {
+            int fill = Math.min(length, 64 - blockLength);
+            System.arraycopy(input, offset, block, blockLength, fill);
+            blockLength += fill;
+            offset += fill;
+            length -= fill;
+            if (blockLength < 64) {
+                return;
+            }
+            compress(block, 0);
+            blockLength = 0;
+        }
+        
+        // Whole blocks straight from the input
+        while (length >= 64) {
+            compress(input, offset);
+            offset += 64;
+            length -= 64;
+        }
+        
+        System.arraycopy(input, offset, block, 0, length);
+        blockLength = length;
+    }
+    
+    @Override
+    protected byte[] engineDigest() {
+        long bitLength = byteCount << 3;
+        
+        block[blockLength++] = (byte) 0x80;
+        if (blockLength > 56) {
+            Arrays.fill(block, blockLength, 64, (byte) 0);
+            compress(block, 0);
+            blockLength = 0;
+        }
+        Arrays.fill(block, blockLength, 56, (byte) 0);
+        for (int i = 0; i < 8; i++) {
+            block[63 - i] = (byte) (bitLength >>> (8 * i));
+        }
+        compress(block, 0);
+        
+        byte[] out = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            out[4 * i] = (byte) (h[i] >>> 24);
+            out[4 * i + 1] = (byte) (h[i] >>> 16);
+            out[4 * i + 2] = (byte) (h[i] >>> 8);
+            out[4 * i + 3] = (byte) h[i];
+        }
+        
+        engineReset();
+        return out;
+    }
+    
+    @Override
+    protected void engineReset() {
+        System.arraycopy(INITIAL, 0, h, 0, 8);
+        Arrays.fill(block, (byte) 0);
+        blockLength = 0;
+        byteCount = 0;
+    }
+    
+    private void compress(byte[] data, int offset) {
+        for (int t = 0; t < 16; t++) {
+            int i = offset + 4 * t;
+            w[t] = (data[i] << 24) | ((data[i + 1] & 0xff) << 16)
+                 | ((data[i + 2] & 0xff) << 8) | (data[i + 3] & 0xff);
+        }
+        for (int t = 16; t < 64; t++) {
+            int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+        
+        int a = h[0], b = h[1], c = h[2], d = h[3];
+        int e = h[4], f = h[5], g = h[6], hh = h[7];
+        
+        for (int t = 0; t < 64; t++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int temp1 = hh + s1 + ch + K[t] + w[t];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int temp2 = s0 + maj;
+            
+            hh = g;
+            g = f;
+            f = e;
+            e = d + temp1;
+            d = c;
+            c = b;
+            b = a;
+            a = temp1 + temp2;
+        }
+        
+        h[0] += a; h[1] += b; h[2] += c; h[3] += d;
+        h[4] += e; h[5] += f; h[6] += g; h[7] += hh;
+    }
+}
@@ -0,0 +1,77 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.BufferPool;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.model.IngestConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Runs the observer and every stage on the calling thread, one chunk at a time
+ *
+ * The chunk buffer is leased from the shared pool and reused for every
+ * chunk; it is only swapped when an adaptive source asks for a new size.
+ */
+class SerialPass implements ProcessingPass {
+    private final IngestConfig config;
+    
+    SerialPass(IngestConfig config) {
+        this.config = config;
+    }
+    
+    @Override
+    public boolean run(ByteSource source, UploadObserver observer, 
+                       List<ChunkStage> stages) throws IOException {
+        BufferPool pool = BufferPool.shared();
+        int chunkSize = chunkSizeFor(source);
+        BufferPool.Lease chunkLease = leaseChunk(pool, chunkSize);
+        
+        try {
+            ByteBuffer chunk = chunkLease.buffer();
+            chunk.limit(chunkSize);
+            
+            while (source.read(chunk) != -1) {
+                chunk.flip();
+                
+                if (!observer.observe(chunk)) {
+                    return false;
+                }
+                
+                for (ChunkStage stage : stages) {
+                    chunk.rewind();
+                    stage.accept(chunk);
+                }
+                
+                int preferred = chunkSizeFor(source);
+                if (preferred != chunkSize) {
+                    chunkLease.release();
+                    chunkLease = leaseChunk(pool, preferred);
+                    chunkSize = preferred;
+                    chunk = chunkLease.buffer();
+                }
+                chunk.clear().limit(chunkSize);
+            }
+            
+            for (ChunkStage stage : stages) {
+                stage.finish();
+            }
+            return true;
+        } finally {
+            chunkLease.close();
+        }
+    }
+    
+    /**
+     * Read size for the next chunk: the source's preference if it has one, else the configured size
+     */
+    private int chunkSizeFor(ByteSource source) {
+        int preferred = source.preferredChunkSize();
+        return preferred > 0 ? preferred : config.getChunkSize();
+    }
+    
+    private BufferPool.Lease leaseChunk(BufferPool pool, int size) {
+        return config.isDirectBuffers() ? pool.leaseDirect(size) : pool.lease(size);
+    }
+}
@@ -0,0 +1,41 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.HybridSpool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes every chunk to the spool, until asked to discard it
+ *
+ * Discard requests may come from the reader thread while this stage runs
+ * elsewhere, so they are only flagged here and carried out by the stage itself.
+ */
+class SpoolStage implements ChunkStage {
+    private final HybridSpool spool;
+    private volatile boolean discardRequested = false;
+    
+    SpoolStage(HybridSpool spool) {
+        this.spool = spool;
+    }
+    
+    @Override
+    public void requestDiscard() {
+        discardRequested = true;
+    }
+    
+    @Override
+    public void accept(ByteBuffer chunk) throws IOException {
+        if (discardRequested && !spool.isDiscarded()) {
+            spool.discard();
+        }
+        spool.write(chunk);
+    }
+    
+    @Override
+    public void finish() throws IOException {
+        if (discardRequested) {
+            spool.discard();
+        }
+    }
+}
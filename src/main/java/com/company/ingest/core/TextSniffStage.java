@@ -0,0 +1,35 @@
+package com.company.ingest.core;
+
+import com.company.ingest.mime.TextSniffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sniffs text encoding and structure during the pass for uploads no signature matched
+ *
+ * Stops examining bytes at the first one that cannot be text.
+ */
+class TextSniffStage implements ChunkStage {
+    private final TextSniffer sniffer = new TextSniffer();
+    
+    @Override
+    public void accept(ByteBuffer chunk) {
+        sniffer.update(chunk);
+    }
+    
+    boolean isSettled() {
+        return sniffer.isSettled();
+    }
+    
+    /**
+     * Final MIME type: text/plain, text/csv or application/json in place of
+     * an unrecognised header when the whole upload read as text, else the header's
+     */
+    String refine(String headerMime) {
+        if (!"application/octet-stream".equals(headerMime)) {
+            return headerMime;
+        }
+        String textMime = sniffer.mimeType();
+        return textMime != null ? textMime : headerMime;
+    }
+}
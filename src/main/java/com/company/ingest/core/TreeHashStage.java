@@ -0,0 +1,147 @@
+package com.company.ingest.core;
+
+import com.company.ingest.model.TreeHash;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a {@link TreeHash}, hashing full leaves in parallel on a fork/join pool
+ *
+ * Chunks are copied into a leaf-sized block; each full block is forked off
+ * as a task while the next one fills. At most two leaves per pool thread
+ * wait to be hashed, after which the stage blocks on the oldest, so memory
+ * stays bounded when the pool falls behind the reader.
+ */
+class TreeHashStage implements ChunkStage {
+    
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    
+    /**
+     * One SHA-256 per pool thread, shared by every leaf it hashes
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
+    private final int leafSize;
+    private final ForkJoinPool pool;
+    private final int maxPending;
+    private final List<ForkJoinTask<byte[]>> leaves = new ArrayList<>();
+    private int joined;
+    private byte[] block;
+    private int filled;
+    private TreeHash result;
+    
+    TreeHashStage(int leafSize, ForkJoinPool pool) {
+        this.leafSize = leafSize;
+        this.pool = pool;
+        this.maxPending = 2 * pool.getParallelism();
+    }
+    
+    @Override
+    public void accept(ByteBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            if (block == null) {
+                block = new byte[leafSize];
+            }
+            int n = Math.min(chunk.remaining(), leafSize - filled);
+            chunk.get(block, filled, n);
+            filled += n;
+            if (filled == leafSize) {
+                forkLeaf();
+            }
+        }
+    }
+    
+    @Override
+    public void finish() {
+        if (filled > 0) {
+            forkLeaf();
+        }
+        
+        List<byte[]> hashes = new ArrayList<>(leaves.size());
+        for (ForkJoinTask<byte[]> leaf : leaves) {
+            hashes.add(leaf.join());
+        }
+        
+        HexFormat hex = HexFormat.of();
+        List<String> leafHex = new ArrayList<>(hashes.size());
+        for (byte[] hash : hashes) {
+            leafHex.add(hex.formatHex(hash));
+        }
+        result = new TreeHash(leafSize, hex.formatHex(root(hashes, 0, hashes.size())), leafHex);
+    }
+    
+    /**
+     * The tree hash; only valid after {@link #finish()}
+     */
+    TreeHash result() {
+        return result;
+    }
+    
+    private void forkLeaf() {
+        leaves.add(pool.submit(new LeafTask(block, filled)));
+        block = null;
+        filled = 0;
+        
+        while (leaves.size() - joined > maxPending) {
+            leaves.get(joined++).join();
+        }
+    }
+    
+    /**
+     * RFC 6962 Merkle tree hash of hashes[from, to)
+     */
+    private static byte[] root(List<byte[]> hashes, int from, int to) {
+        int n = to - from;
+        if (n == 0) {
+            return SHA_256.get().digest();
+        }
+        if (n == 1) {
+            return hashes.get(from);
+        }
+        int split = Integer.highestOneBit(n - 1);
+        byte[] left = root(hashes, from, from + split);
+        byte[] right = root(hashes, from + split, to);
+        
+        MessageDigest digest = SHA_256.get();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+    
+    private static class LeafTask extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+        
+        private byte[] data;
+        private final int length;
+        
+        LeafTask(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+        
+        @Override
+        protected byte[] compute() {
+            MessageDigest digest = SHA_256.get();
+            digest.update(LEAF_PREFIX);
+            digest.update(data, 0, length);
+            data = null; // the finished task outlives the block
+            return digest.digest();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.company.ingest.core;
+
+import com.company.ingest.io.BufferPool;
+import com.company.ingest.mime.MimeDetector;
+import com.company.ingest.mime.SignatureRegistry;
+import com.company.ingest.mime.TextSniffer;
+import com.company.ingest.mime.ZipInspector;
+import com.company.ingest.model.FailFastPolicy;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.UploadMeta;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reader-side bookkeeping for the processing pass: size, MIME header
+ * capture and fail-fast decisions.
+ *
+ * This runs on the thread that reads the source, before a chunk is handed
+ * to the stages, so it can stop the read as soon as the upload is rejected.
+ */
+class UploadObserver implements AutoCloseable {
+    
+    /**
+     * Smallest detection window; the ZIP refiner looks this far into the header
+     */
+    static final int MIN_DETECTION_WINDOW = 512;
+    
+    /**
+     * Largest detection window; signatures ending beyond it never match
+     */
+    static final int MAX_DETECTION_WINDOW = 1024 * 1024;
+    
+    private final UploadMeta meta;
+    private final IngestConfig config;
+    private final List<ChunkStage> stages;
+    private final BooleanSupplier cancelled;
+    private final SignatureRegistry registry;
+    private final int window;
+    private final BufferPool.Lease headerLease;
+    
+    private long size = 0;
+    private int headerLength = 0;
+    private boolean headerCaptured;
+    private String detectedMime;
+    private boolean provisional;
+    private String rejection;
+    
+    UploadObserver(UploadMeta meta, IngestConfig config, List<ChunkStage> stages, 
+                   BooleanSupplier cancelled) {
+        this.meta = meta;
+        this.config = config;
+        this.stages = stages;
+        this.cancelled = cancelled;
+        // One registry for the whole upload, even if another is installed meanwhile
+        this.registry = MimeDetector.registry();
+        this.window = detectionWindow(registry);
+        this.headerLease = BufferPool.shared().lease(window);
+    }
+    
+    /**
+     * Header bytes to capture for a registry: enough for its deepest signature
+     */
+    static int detectionWindow(SignatureRegistry registry) {
+        return Math.min(MAX_DETECTION_WINDOW, Math.max(MIN_DETECTION_WINDOW, registry.getMaxSignatureEnd()));
+    }
+    
+    /**
+     * Account for one chunk without moving its position
+     *
+     * @return false if reading should stop because the upload was rejected or cancelled
+     */
+    boolean observe(ByteBuffer chunk) {
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+        
+        int bytesRead = chunk.remaining();
+        
+        // Capture the detection window straight into the leased buffer
+        if (headerLength < window) {
+            int toCopy = Math.min(bytesRead, window - headerLength);
+            chunk.get(chunk.position(), headerLease.array(), headerLength, toCopy);
+            headerLength += toCopy;
+            
+            if (headerLength == window) {
+                captureHeader();
+            }
+        }
+        
+        // Track size
+        size += bytesRead;
+        
+        FailFastPolicy policy = config.getFailFastPolicy();
+        if (rejection == null && policy != FailFastPolicy.SPOOL) {
+            rejection = earlyRejection();
+            if (rejection != null && policy == FailFastPolicy.ABORT) {
+                return false;
+            }
+            if (rejection != null) {
+                for (ChunkStage stage : stages) {
+                    stage.requestDiscard();
+                }
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Pick up after {@code size} bytes seen by an earlier attempt, whose
+     * leading bytes (up to the header size) are {@code header}
+     */
+    void resume(byte[] header, long size) {
+        headerLength = Math.min(header.length, window);
+        System.arraycopy(header, 0, headerLease.array(), 0, headerLength);
+        this.size = size;
+        
+        // A window that grew since the earlier attempt can no longer be filled in order
+        if (headerLength == window || size > headerLength) {
+            captureHeader();
+        }
+    }
+    
+    /**
+     * Settle MIME detection for uploads shorter than the header
+     */
+    void finish() {
+        if (!headerCaptured) {
+            captureHeader();
+        }
+    }
+    
+    private void captureHeader() {
+        headerCaptured = true;
+        detectedMime = MimeDetector.detect(headerLease.array(), headerLength, registry);
+        // Unmatched headers that read as text are only classified once the rest has been sniffed
+        provisional = ZipInspector.isProvisional(detectedMime)
+            || (detectedMime.equals("application/octet-stream")
+                && TextSniffer.couldBeText(headerLease.array(), headerLength));
+    }
+    
+    /**
+     * Reason the upload can already be rejected, or null.
+     *
+     * Only checks whose outcome can no longer change are made here; the MIME
+     * check waits until the full detection header has been seen, and is left
+     * to the end for ZIPs, whose format depends on their entries, and for
+     * headers that could be text.
+     */
+    private String earlyRejection() {
+        if (size > config.getMaxContentLength()) {
+            return "maximum size exceeded";
+        }
+        if (meta.getContentLength().isPresent() && size > meta.getContentLength().get()) {
+            return "declared content length exceeded";
+        }
+        if (detectedMime != null && !provisional
+                && !config.getAcceptedMimes().contains(MimeDetector.normalize(detectedMime))) {
+            return "MIME type not accepted";
+        }
+        return null;
+    }
+    
+    long size() {
+        return size;
+    }
+    
+    String detectedMime() {
+        return detectedMime;
+    }
+    
+    String rejection() {
+        return rejection;
+    }
+    
+    @Override
+    public void close() {
+        headerLease.close();
+    }
+}
@@ -0,0 +1,35 @@
+package com.company.ingest.core;
+
+import com.company.ingest.mime.ZipInspector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks ZIP local headers during the pass to tell DOCX, XLSX, ODT, JAR, ... apart
+ *
+ * Uploads that do not start with a local header are dropped after four bytes.
+ */
+class ZipInspectionStage implements ChunkStage {
+    private final ZipInspector inspector = new ZipInspector();
+    
+    @Override
+    public void accept(ByteBuffer chunk) {
+        inspector.update(chunk);
+    }
+    
+    boolean isSettled() {
+        return inspector.isSettled();
+    }
+    
+    /**
+     * Final MIME type: the archive's own if the header detection was a
+     * provisional ZIP match and the entries were conclusive, else the header's
+     */
+    String refine(String headerMime) {
+        if (!ZipInspector.isProvisional(headerMime)) {
+            return headerMime;
+        }
+        String archiveMime = inspector.mimeType();
+        return archiveMime != null ? archiveMime : headerMime;
+    }
+}
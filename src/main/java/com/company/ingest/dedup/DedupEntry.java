@@ -0,0 +1,28 @@
+package com.company.ingest.dedup;
+
+/**
+ * What the index remembers about stored content
+ */
+public class DedupEntry {
+    private final String sha256;
+    private final long size;
+    private final String mime;
+    
+    public DedupEntry(String sha256, long size, String mime) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.mime = mime;
+    }
+    
+    public String getSha256() {
+        return sha256;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public String getMime() {
+        return mime;
+    }
+}
@@ -0,0 +1,21 @@
+package com.company.ingest.dedup;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Remembers which content is already stored, keyed by SHA-256 hex digest
+ *
+ * Implementations must be safe for concurrent use.
+ */
+public interface DedupIndex {
+    /**
+     * The entry for this digest, if the content is known to be stored
+     */
+    Optional<DedupEntry> lookup(String sha256) throws IOException;
+    
+    /**
+     * Remember that the content has been stored
+     */
+    void record(DedupEntry entry) throws IOException;
+}
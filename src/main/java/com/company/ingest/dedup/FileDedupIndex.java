@@ -0,0 +1,71 @@
+package com.company.ingest.dedup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent index with one small file per digest, sharded by its first two hex characters
+ *
+ * Each file holds "size mime". Nothing is kept in memory, so the index can
+ * grow without bound and survives restarts; put an {@link InMemoryDedupIndex}
+ * in front of it with {@link TieredDedupIndex} for hot digests.
+ */
+public class FileDedupIndex implements DedupIndex {
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    
+    private final Path directory;
+    
+    public FileDedupIndex(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+    
+    @Override
+    public Optional<DedupEntry> lookup(String sha256) throws IOException {
+        Path file = fileFor(sha256);
+        String content;
+        try {
+            content = Files.readString(file, StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        
+        int space = content.indexOf(' ');
+        if (space < 0) {
+            throw new IOException("Corrupt dedup index entry: " + file);
+        }
+        try {
+            long size = Long.parseLong(content.substring(0, space));
+            return Optional.of(new DedupEntry(sha256, size, content.substring(space + 1)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt dedup index entry: " + file, e);
+        }
+    }
+    
+    @Override
+    public void record(DedupEntry entry) throws IOException {
+        Path file = fileFor(entry.getSha256());
+        Path shard = Files.createDirectories(file.getParent());
+        
+        // Write beside the entry and rename, so lookups never see half an entry
+        Path partial = Files.createTempFile(shard, "partial-", ".tmp");
+        try {
+            Files.writeString(partial, entry.getSize() + " " + entry.getMime(), StandardCharsets.UTF_8);
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+    
+    private Path fileFor(String sha256) {
+        if (sha256 == null || !SHA256_HEX.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Not a lowercase SHA-256 hex digest: " + sha256);
+        }
+        return directory.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+}
@@ -0,0 +1,57 @@
+package com.company.ingest.dedup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory index that forgets the least recently used digests first
+ */
+public class InMemoryDedupIndex implements DedupIndex {
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, DedupEntry> entries;
+    
+    public InMemoryDedupIndex(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DedupEntry> eldest) {
+                return size() > InMemoryDedupIndex.this.maxEntries;
+            }
+        };
+    }
+    
+    @Override
+    public Optional<DedupEntry> lookup(String sha256) {
+        lock.lock();
+        try {
+            return Optional.ofNullable(entries.get(sha256));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void record(DedupEntry entry) {
+        lock.lock();
+        try {
+            entries.put(entry.getSha256(), entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.company.ingest.dedup;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Bounded memory tier in front of a persistent tier
+ *
+ * Lookups try memory first and promote persistent hits into it; records
+ * go to the persistent tier first, so memory never knows more than disk.
+ */
+public class TieredDedupIndex implements DedupIndex {
+    private final InMemoryDedupIndex memory;
+    private final DedupIndex persistent;
+    
+    public TieredDedupIndex(InMemoryDedupIndex memory, DedupIndex persistent) {
+        this.memory = memory;
+        this.persistent = persistent;
+    }
+    
+    @Override
+    public Optional<DedupEntry> lookup(String sha256) throws IOException {
+        Optional<DedupEntry> hit = memory.lookup(sha256);
+        if (hit.isPresent()) {
+            return hit;
+        }
+        
+        hit = persistent.lookup(sha256);
+        hit.ifPresent(memory::record);
+        return hit;
+    }
+    
+    @Override
+    public void record(DedupEntry entry) throws IOException {
+        persistent.record(entry);
+        memory.record(entry);
+    }
+}
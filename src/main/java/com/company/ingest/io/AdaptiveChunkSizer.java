@@ -0,0 +1,86 @@
+package com.company.ingest.io;
+
+/**
+ * Picks a read size from observed fill ratios and throughput.
+ *
+ * Reads are sampled in groups. When reads keep filling the requested size
+ * the chunk size doubles, up to the ceiling. If a doubling made throughput
+ * drop noticeably, it is undone and growth is capped below that size. When
+ * reads come back mostly empty (a slow or trickling source) the size halves,
+ * down to the floor.
+ */
+public class AdaptiveChunkSizer {
+    
+    private static final int SAMPLE_READS = 4;
+    private static final double GROW_FILL_RATIO = 0.9;
+    private static final double SHRINK_FILL_RATIO = 0.25;
+    private static final double REGRESSION_TOLERANCE = 0.10;
+    
+    private final int minChunkSize;
+    private int maxChunkSize;
+    private int chunkSize;
+    
+    private long sampleRequested;
+    private long sampleRead;
+    private long sampleNanos;
+    private int samples;
+    
+    // Throughput before the last doubling, to detect growth that did not pay off
+    private double throughputBeforeGrowth = -1;
+    
+    public AdaptiveChunkSizer(int minChunkSize, int maxChunkSize) {
+        if (minChunkSize <= 0 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException(
+                "Invalid chunk size range: " + minChunkSize + ".." + maxChunkSize);
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.chunkSize = minChunkSize;
+    }
+    
+    /**
+     * Current recommended read size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    /**
+     * Record one read of {@code requested} bytes that returned {@code bytesRead} in {@code nanos}
+     */
+    public void record(int requested, int bytesRead, long nanos) {
+        if (requested <= 0 || bytesRead < 0) {
+            return; // EOF and empty requests say nothing about the source
+        }
+        
+        sampleRequested += requested;
+        sampleRead += bytesRead;
+        sampleNanos += nanos;
+        if (++samples < SAMPLE_READS) {
+            return;
+        }
+        
+        double fillRatio = (double) sampleRead / sampleRequested;
+        double throughput = (double) sampleRead / Math.max(sampleNanos, 1);
+        samples = 0;
+        sampleRequested = 0;
+        sampleRead = 0;
+        sampleNanos = 0;
+        
+        if (throughputBeforeGrowth > 0 
+                && throughput < throughputBeforeGrowth * (1 - REGRESSION_TOLERANCE)) {
+            // The last doubling made things slower: step back and stop growing past here
+            maxChunkSize = Math.max(minChunkSize, chunkSize / 2);
+            chunkSize = maxChunkSize;
+            throughputBeforeGrowth = -1;
+        } else if (fillRatio >= GROW_FILL_RATIO && chunkSize < maxChunkSize) {
+            throughputBeforeGrowth = throughput;
+            chunkSize = (int) Math.min((long) chunkSize * 2, maxChunkSize);
+        } else if (fillRatio < SHRINK_FILL_RATIO && chunkSize > minChunkSize) {
+            throughputBeforeGrowth = -1;
+            chunkSize = Math.max(chunkSize / 2, minChunkSize);
+        } else {
+            throughputBeforeGrowth = -1;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.company.ingest.io;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide pool of reusable byte buffers shared by concurrent ingests.
+ *
+ * Buffers come in power-of-two size classes from 512 bytes to 1 MB. A
+ * {@link Lease} hands out exclusive use of one buffer until it is released;
+ * released buffers go back to their class unless that would push the idle
+ * pooled bytes over the hard cap, in which case they are left to the GC.
+ * Requests above the largest class are served unpooled. Heap and direct
+ * (off-heap) buffers are pooled separately and share the same cap.
+ *
+ * Outstanding leases are always counted. With leak tracking enabled (the
+ * {@code ingest.bufferPool.trackLeaks} system property for the shared pool)
+ * each lease also records where it was taken, for {@link #describeLeaks()}.
+ */
+public final class BufferPool {
+    
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+    
+    private static final int MIN_CLASS_SHIFT = 9;   // 512 B
+    private static final int MAX_CLASS_SHIFT = 20;  // 1 MB
+    
+    private static final BufferPool SHARED = new BufferPool(
+        DEFAULT_MAX_POOLED_BYTES, Boolean.getBoolean("ingest.bufferPool.trackLeaks"));
+    
+    private final long maxPooledBytes;
+    private final boolean trackLeaks;
+    private final Queue<ByteBuffer>[] heapClasses;
+    private final Queue<ByteBuffer>[] directClasses;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicInteger outstandingLeases = new AtomicInteger();
+    private final Map<Lease, Throwable> leaseSites = new ConcurrentHashMap<>();
+    
+    public BufferPool(long maxPooledBytes) {
+        this(maxPooledBytes, false);
+    }
+    
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public BufferPool(long maxPooledBytes, boolean trackLeaks) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.trackLeaks = trackLeaks;
+        this.heapClasses = new Queue[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+        this.directClasses = new Queue[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+        for (int i = 0; i < heapClasses.length; i++) {
+            heapClasses[i] = new ConcurrentLinkedQueue<>();
+            directClasses[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+    
+    /**
+     * The pool shared by every ingest in this process
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+    
+    /**
+     * Lease a heap buffer of at least {@code minCapacity} bytes
+     */
+    public Lease lease(int minCapacity) {
+        return lease(minCapacity, false);
+    }
+    
+    /**
+     * Lease a direct (off-heap) buffer of at least {@code minCapacity} bytes
+     */
+    public Lease leaseDirect(int minCapacity) {
+        return lease(minCapacity, true);
+    }
+    
+    private Lease lease(int minCapacity, boolean direct) {
+        if (minCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + minCapacity);
+        }
+        
+        int classIndex = classIndex(minCapacity);
+        int capacity = classIndex >= 0 ? 1 << (classIndex + MIN_CLASS_SHIFT) : minCapacity;
+        ByteBuffer buffer = null;
+        
+        if (classIndex >= 0) {
+            buffer = classesFor(direct)[classIndex].poll();
+            if (buffer != null) {
+                pooledBytes.addAndGet(-capacity);
+            }
+        }
+        if (buffer == null) {
+            buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+        
+        Lease lease = new Lease(buffer, classIndex);
+        outstandingLeases.incrementAndGet();
+        if (trackLeaks) {
+            leaseSites.put(lease, new Throwable("Buffer leased here"));
+        }
+        return lease;
+    }
+    
+    private void giveBack(Lease lease) {
+        outstandingLeases.decrementAndGet();
+        if (trackLeaks) {
+            leaseSites.remove(lease);
+        }
+        
+        if (lease.classIndex < 0) {
+            return;
+        }
+        
+        // Reserve room under the cap before pooling; drop the buffer if there is none
+        int size = lease.buffer.capacity();
+        long current;
+        do {
+            current = pooledBytes.get();
+            if (current + size > maxPooledBytes) {
+                return;
+            }
+        } while (!pooledBytes.compareAndSet(current, current + size));
+        
+        classesFor(lease.buffer.isDirect())[lease.classIndex].offer(lease.buffer);
+    }
+    
+    private Queue<ByteBuffer>[] classesFor(boolean direct) {
+        return direct ? directClasses : heapClasses;
+    }
+    
+    /**
+     * Size class for a request, or -1 if it is too large to pool
+     */
+    private static int classIndex(int capacity) {
+        if (capacity > (1 << MAX_CLASS_SHIFT)) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+        return Math.max(shift, MIN_CLASS_SHIFT) - MIN_CLASS_SHIFT;
+    }
+    
+    /**
+     * Bytes currently held idle by the pool
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+    
+    public long getMaxPooledBytes() {
+        return maxPooledBytes;
+    }
+    
+    /**
+     * Leases taken and not yet released
+     */
+    public int getOutstandingLeases() {
+        return outstandingLeases.get();
+    }
+    
+    /**
+     * Allocation sites of outstanding leases (empty unless leak tracking is on)
+     */
+    public String describeLeaks() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        for (Throwable site : leaseSites.values()) {
+            site.printStackTrace(writer);
+        }
+        writer.flush();
+        return out.toString();
+    }
+    
+    /**
+     * Exclusive use of one pooled buffer until released
+     */
+    public final class Lease implements AutoCloseable {
+        private final ByteBuffer buffer;
+        private final int classIndex;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        private Lease(ByteBuffer buffer, int classIndex) {
+            this.buffer = buffer;
+            this.classIndex = classIndex;
+        }
+        
+        /**
+         * The leased heap array; may be larger than requested
+         *
+         * @throws UnsupportedOperationException for direct leases
+         */
+        public byte[] array() {
+            checkNotReleased();
+            if (buffer.isDirect()) {
+                throw new UnsupportedOperationException("Direct buffer lease has no array");
+            }
+            return buffer.array();
+        }
+        
+        /**
+         * The leased buffer, cleared to its full capacity
+         */
+        public ByteBuffer buffer() {
+            checkNotReleased();
+            buffer.clear();
+            return buffer;
+        }
+        
+        public int capacity() {
+            return buffer.capacity();
+        }
+        
+        public boolean isDirect() {
+            return buffer.isDirect();
+        }
+        
+        private void checkNotReleased() {
+            if (released.get()) {
+                throw new IllegalStateException("Buffer lease already released");
+            }
+        }
+        
+        /**
+         * Return the buffer to the pool; the buffer must not be used afterwards
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                throw new IllegalStateException("Buffer lease released twice");
+            }
+            giveBack(this);
+        }
+        
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                giveBack(this);
+            }
+        }
+    }
+}
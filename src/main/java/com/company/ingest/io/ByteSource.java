@@ -1,10 +1,130 @@
 package com.company.ingest.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 
+/**
+ * Finite, read-once sequence of bytes.
+ *
+ * Implementations provide {@link #read(byte[], int, int)}, which fills a
+ * caller-owned buffer so a steady-state reader allocates nothing per chunk.
+ * {@link #nextChunk()} is kept as an allocating convenience on top of it, and
+ * {@link #nextBuffer()} lets sources that already hold the bytes (such as a
+ * memory-mapped file) hand out views without copying.
+ *
+ * Sinks that write to a channel should prefer {@link #transferTo}: sources
+ * that report {@link #supportsTransferTo()} move the bytes without passing
+ * them through the JVM heap, and every other source falls back to a copy loop.
+ */
 public interface ByteSource extends AutoCloseable {
-    byte[] nextChunk() throws IOException;
+
+    int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * Read up to {@code length} bytes into {@code buffer} starting at {@code offset}.
+     *
+     * @return number of bytes read, or -1 at end of stream
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Read size this source would like callers to use right now, or 0 for no preference.
+     *
+     * Adaptive sources change this as they learn about the upstream, so
+     * callers should check it between reads.
+     */
+    default int preferredChunkSize() {
+        return 0;
+    }
+    
+    /**
+     * Read bytes into the remaining space of {@code target}, advancing its position.
+     *
+     * The default adapts {@link #read(byte[], int, int)}: heap buffers are
+     * filled in place and direct buffers through a pooled scratch array.
+     * Sources backed by channels override this to read straight into
+     * direct buffers.
+     *
+     * @return number of bytes read, or -1 at end of stream
+     */
+    default int read(ByteBuffer target) throws IOException {
+        if (target.hasArray()) {
+            int bytesRead = read(target.array(), target.arrayOffset() + target.position(), 
+                                 target.remaining());
+            if (bytesRead > 0) {
+                target.position(target.position() + bytesRead);
+            }
+            return bytesRead;
+        }
+        
+        try (BufferPool.Lease lease = BufferPool.shared().lease(
+                 Math.min(target.remaining(), DEFAULT_CHUNK_SIZE))) {
+            byte[] scratch = lease.array();
+            int bytesRead = read(scratch, 0, Math.min(target.remaining(), scratch.length));
+            if (bytesRead > 0) {
+                target.put(scratch, 0, bytesRead);
+            }
+            return bytesRead;
+        }
+    }
+    
+    /**
+     * Return the next chunk as a freshly allocated array, or an empty array at EOF.
+     */
+    default byte[] nextChunk() throws IOException {
+        byte[] buffer = new byte[DEFAULT_CHUNK_SIZE];
+        int bytesRead = read(buffer, 0, buffer.length);
+
+        if (bytesRead <= 0) {
+            return new byte[0];
+        }
+
+        return bytesRead < buffer.length ? Arrays.copyOf(buffer, bytesRead) : buffer;
+    }
+    
+    /**
+     * Return a view of the next chunk, or an empty buffer at EOF.
+     *
+     * The returned buffer is read-only for the caller and only valid until the
+     * next read or close; copy out anything that must outlive that.
+     */
+    default ByteBuffer nextBuffer() throws IOException {
+        return ByteBuffer.wrap(nextChunk());
+    }
+    
+    /**
+     * Whether {@link #transferTo} is served by the OS rather than a copy loop
+     */
+    default boolean supportsTransferTo() {
+        return false;
+    }
+    
+    /**
+     * Write all remaining bytes to {@code target}.
+     *
+     * @return number of bytes transferred
+     */
+    default long transferTo(WritableByteChannel target) throws IOException {
+        try (BufferPool.Lease lease = BufferPool.shared().lease(DEFAULT_CHUNK_SIZE)) {
+            byte[] buffer = lease.array();
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            long total = 0;
+            
+            int bytesRead;
+            while ((bytesRead = read(buffer, 0, buffer.length)) != -1) {
+                view.clear().limit(bytesRead);
+                while (view.hasRemaining()) {
+                    target.write(view);
+                }
+                total += bytesRead;
+            }
+            
+            return total;
+        }
+    }
     
     @Override
     void close() throws IOException;
-}
\ No newline at end of file
+}
@@ -0,0 +1,206 @@
+package com.company.ingest.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ByteSource over any blocking {@link ReadableByteChannel}
+ * (socket channels, file channels, pipes).
+ *
+ * Reads go into a small set of pooled segments. Channels that support it
+ * fill all segments with one scatter read, so a single syscall can pull in
+ * several chunks. A caller whose buffer is at least as large as all the
+ * segments together is filled directly from the channel without a copy.
+ * File channels keep the zero-copy {@link #transferTo} path.
+ */
+public class ChannelByteSource implements ByteSource {
+    
+    public static final int DEFAULT_SEGMENTS = 4;
+    
+    private final ReadableByteChannel channel;
+    private final BufferPool.Lease[] leases;
+    private final ByteBuffer[] segments;
+    private final int totalCapacity;
+    
+    private int segmentIndex;
+    private boolean buffered = false;
+    
+    public ChannelByteSource(ReadableByteChannel channel) {
+        this(channel, DEFAULT_SEGMENTS, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public ChannelByteSource(ReadableByteChannel channel, int segmentCount, int segmentSize) {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+        if (segmentCount < 1) {
+            throw new IllegalArgumentException("Need at least one segment: " + segmentCount);
+        }
+        
+        this.channel = channel;
+        this.leases = new BufferPool.Lease[segmentCount];
+        this.segments = new ByteBuffer[segmentCount];
+        
+        int capacity = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            leases[i] = BufferPool.shared().lease(segmentSize);
+            segments[i] = leases[i].buffer();
+            segments[i].limit(0); // nothing buffered yet
+            capacity += segments[i].capacity();
+        }
+        this.totalCapacity = capacity;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        
+        ByteBuffer segment = currentSegment();
+        if (segment == null) {
+            return -1;
+        }
+        
+        int count = Math.min(length, segment.remaining());
+        segment.get(buffer, offset, count);
+        return count;
+    }
+    
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (!target.hasRemaining()) {
+            return 0;
+        }
+        
+        // Large reads with nothing buffered bypass the segments entirely
+        if (!hasBufferedBytes() && target.remaining() >= totalCapacity) {
+            return channel.read(target);
+        }
+        
+        ByteBuffer segment = currentSegment();
+        if (segment == null) {
+            return -1;
+        }
+        
+        int count = Math.min(target.remaining(), segment.remaining());
+        int segmentLimit = segment.limit();
+        segment.limit(segment.position() + count);
+        target.put(segment);
+        segment.limit(segmentLimit);
+        return count;
+    }
+    
+    @Override
+    public boolean supportsTransferTo() {
+        return channel instanceof FileChannel;
+    }
+    
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        if (!(channel instanceof FileChannel)) {
+            return ByteSource.super.transferTo(target);
+        }
+        
+        // Flush whatever the segments already hold, then let the kernel copy the rest
+        long total = 0;
+        ByteBuffer segment;
+        while (hasBufferedBytes() && (segment = currentSegment()) != null) {
+            total += segment.remaining();
+            while (segment.hasRemaining()) {
+                target.write(segment);
+            }
+        }
+        
+        FileChannel file = (FileChannel) channel;
+        long start = file.position();
+        long size = file.size();
+        long position = start;
+        while (position < size) {
+            long transferred = file.transferTo(position, size - position, target);
+            if (transferred <= 0) {
+                // The kernel copy made no progress; finish with the chunked copy from here
+                file.position(position);
+                return total + (position - start) + ByteSource.super.transferTo(target);
+            }
+            position += transferred;
+        }
+        file.position(position);
+        return total + (position - start);
+    }
+    
+    private boolean hasBufferedBytes() {
+        if (!buffered) {
+            return false;
+        }
+        for (int i = segmentIndex; i < segments.length; i++) {
+            if (segments[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Segment with unread bytes, refilling from the channel when all are drained; null at EOF
+     */
+    private ByteBuffer currentSegment() throws IOException {
+        while (true) {
+            while (buffered && segmentIndex < segments.length) {
+                if (segments[segmentIndex].hasRemaining()) {
+                    return segments[segmentIndex];
+                }
+                segmentIndex++;
+            }
+            
+            if (!refill()) {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Read the next batch into the segments
+     *
+     * @return false at end of stream
+     */
+    private boolean refill() throws IOException {
+        for (ByteBuffer segment : segments) {
+            segment.clear();
+        }
+        
+        long bytesRead;
+        do {
+            if (channel instanceof ScatteringByteChannel) {
+                bytesRead = ((ScatteringByteChannel) channel).read(segments);
+            } else {
+                // Only one read: a second could block while bytes are already in hand
+                bytesRead = channel.read(segments[0]);
+            }
+        } while (bytesRead == 0);
+        
+        for (ByteBuffer segment : segments) {
+            segment.flip();
+        }
+        segmentIndex = 0;
+        buffered = bytesRead > 0;
+        return buffered;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            for (BufferPool.Lease lease : leases) {
+                lease.close();
+            }
+        }
+    }
+}
@@ -2,48 +2,253 @@ package com.company.ingest.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ByteSource that reads from a file (for replaying bytes to sink)
+ *
+ * Files at or above the map threshold are served from read-only memory
+ * mappings instead of stream reads. Mappings cover at most one window at a
+ * time, so files larger than a single mapping roll through consecutive
+ * windows. {@link #nextBuffer()} then returns slices of the mapping itself.
+ *
+ * In either mode {@link #transferTo} hands the remaining bytes to
+ * {@link FileChannel#transferTo}, letting the kernel copy file to channel
+ * (sendfile / copy_file_range) without touching the heap. If the kernel copy
+ * stops making progress, the rest goes through the chunked copy instead.
  */
 public class FileByteSource implements ByteSource {
+    
+    /** Largest region mapped at once */
+    public static final int DEFAULT_MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+    
+    /** Size of the mapped slices handed out by nextBuffer() */
+    private static final int MAP_SLICE_SIZE = 64 * 1024;
+    
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    
+    /** Most refused deletes of mapped files kept for a retry */
+    private static final int MAX_PENDING_DELETES = 1024;
+    
+    private static final Set<Path> PENDING_DELETES = ConcurrentHashMap.newKeySet();
+    
     private final Path filePath;
+    private final FileChannel channel;
     private final InputStream input;
     private final boolean deleteOnClose;
+    private final boolean mapped;
+    private final long fileSize;
+    private final int mapWindowSize;
+    
+    // Mapped mode: current window and the file offset where the next one starts
+    private MappedByteBuffer window;
+    private long nextWindowStart;
+    
+    // Plain mode: pooled buffer backing nextBuffer(), leased on first use
+    private BufferPool.Lease readLease;
+    private ByteBuffer readBuffer;
     
     public FileByteSource(Path filePath, boolean deleteOnClose) throws IOException {
+        this(filePath, deleteOnClose, Long.MAX_VALUE);
+    }
+    
+    public FileByteSource(Path filePath, boolean deleteOnClose, long mapThreshold) throws IOException {
+        this(filePath, deleteOnClose, mapThreshold, DEFAULT_MAP_WINDOW_SIZE);
+    }
+    
+    public FileByteSource(Path filePath, boolean deleteOnClose, 
+                          long mapThreshold, int mapWindowSize) throws IOException {
+        if (mapWindowSize <= 0) {
+            throw new IllegalArgumentException("Map window size must be positive: " + mapWindowSize);
+        }
+        
         this.filePath = filePath;
-        this.input = Files.newInputStream(filePath);
+        this.channel = FileChannel.open(filePath, StandardOpenOption.READ);
+        this.input = Channels.newInputStream(channel);
         this.deleteOnClose = deleteOnClose;
+        this.fileSize = channel.size();
+        this.mapped = fileSize > 0 && fileSize >= mapThreshold;
+        this.mapWindowSize = mapWindowSize;
+    }
+    
+    /**
+     * Whether this source serves bytes from memory mappings
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (!mapped) {
+            return input.read(buffer, offset, length);
+        }
+        
+        if (!advanceWindow()) {
+            return -1;
+        }
+        
+        int count = Math.min(length, window.remaining());
+        window.get(buffer, offset, count);
+        return count;
+    }
+    
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (!mapped) {
+            return channel.read(target);
+        }
+        
+        if (!advanceWindow()) {
+            return -1;
+        }
+        
+        // Narrow the window's limit for a bulk copy instead of slicing per call
+        int count = Math.min(target.remaining(), window.remaining());
+        int windowLimit = window.limit();
+        window.limit(window.position() + count);
+        target.put(window);
+        window.limit(windowLimit);
+        return count;
+    }
+    
+    @Override
+    public ByteBuffer nextBuffer() throws IOException {
+        if (!mapped) {
+            if (readBuffer == null) {
+                readLease = BufferPool.shared().lease(DEFAULT_CHUNK_SIZE);
+                readBuffer = ByteBuffer.wrap(readLease.array());
+            }
+            int bytesRead = input.read(readBuffer.array(), 0, readBuffer.capacity());
+            if (bytesRead <= 0) {
+                return EMPTY;
+            }
+            readBuffer.clear().limit(bytesRead);
+            return readBuffer;
+        }
+        
+        if (!advanceWindow()) {
+            return EMPTY;
+        }
+        
+        int count = Math.min(MAP_SLICE_SIZE, window.remaining());
+        ByteBuffer slice = window.slice();
+        slice.limit(count);
+        window.position(window.position() + count);
+        return slice;
+    }
+    
+    /**
+     * Make sure the current window has bytes left, mapping the next one if needed.
+     *
+     * @return false at end of file
+     */
+    private boolean advanceWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        
+        if (nextWindowStart >= fileSize) {
+            return false;
+        }
+        
+        long length = Math.min(mapWindowSize, fileSize - nextWindowStart);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, nextWindowStart, length);
+        nextWindowStart += length;
+        return true;
     }
     
     @Override
-    public byte[] nextChunk() throws IOException {
-        byte[] buffer = new byte[8192];
-        int bytesRead = input.read(buffer);
+    public boolean supportsTransferTo() {
+        return true;
+    }
+    
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long start = mapped 
+            ? nextWindowStart - (window == null ? 0 : window.remaining())
+            : channel.position();
         
-        if (bytesRead <= 0) {
-            return new byte[0];
+        long position = start;
+        while (position < fileSize) {
+            long transferred = channel.transferTo(position, fileSize - position, target);
+            if (transferred <= 0) {
+                // The kernel copy made no progress; finish with the chunked copy from here
+                seek(position);
+                return (position - start) + ByteSource.super.transferTo(target);
+            }
+            position += transferred;
         }
         
-        return bytesRead < buffer.length ? Arrays.copyOf(buffer, bytesRead) : buffer;
+        // Leave the source at EOF for both read modes
+        seek(fileSize);
+        return position - start;
+    }
+    
+    private void seek(long position) throws IOException {
+        if (mapped) {
+            window = null;
+            nextWindowStart = position;
+        } else {
+            channel.position(position);
+        }
     }
     
+    /**
+     * Close the file and, if asked to, delete it
+     *
+     * Mapped windows are only unmapped when the GC collects them, which may be
+     * after this returns. Unix deletes a still-mapped file anyway; on platforms
+     * that refuse (Windows) the path is kept, up to MAX_PENDING_DELETES of them,
+     * and the delete is retried whenever a later source closes.
+     */
     @Override
     public void close() throws IOException {
+        window = null;
+        if (readLease != null) {
+            readLease.close();
+            readBuffer = null;
+        }
         try {
             input.close();
         } finally {
             if (deleteOnClose) {
-                try {
-                    Files.deleteIfExists(filePath);
-                } catch (IOException e) {
-                    System.err.println("Warning: Failed to delete temp file: " + filePath);
-                }
+                delete();
+                retryPendingDeletes();
+            }
+        }
+    }
+    
+    private void delete() {
+        try {
+            Files.deleteIfExists(filePath);
+        } catch (IOException e) {
+            // A file refused while still mapped can go once the GC has unmapped it
+            if (mapped && PENDING_DELETES.size() < MAX_PENDING_DELETES && PENDING_DELETES.add(filePath)) {
+                System.err.println("Warning: Failed to delete mapped temp file, will retry: " + filePath);
+            } else {
+                System.err.println("Warning: Failed to delete temp file: " + filePath);
+            }
+        }
+    }
+    
+    private static void retryPendingDeletes() {
+        for (Path pending : PENDING_DELETES) {
+            try {
+                Files.deleteIfExists(pending);
+                PENDING_DELETES.remove(pending);
+            } catch (IOException e) {
+                // Still mapped; the next close tries again
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,251 @@
+package com.company.ingest.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Holds an upload between the processing pass and the sink replay.
+ *
+ * Bytes stay in a pooled memory buffer up to the memory threshold and
+ * spill to a temp file as soon as they exceed it. If the expected length
+ * is known up front, the spool goes straight to disk for uploads over the
+ * threshold. The memory buffer starts no larger than the hint or
+ * INITIAL_MEMORY_CAPACITY and grows as bytes arrive, so a client-supplied
+ * length cannot reserve memory ahead of the data; a wrong hint only costs a
+ * regrow or a spill. {@link #openReplay()} hands the bytes to a
+ * ByteSource from whichever backing was used.
+ *
+ * {@link #discard()} drops everything held so far and ignores later writes,
+ * for uploads that are rejected before they finish.
+ */
+public class HybridSpool implements AutoCloseable {
+    
+    private static final int INITIAL_MEMORY_CAPACITY = 8192;
+    private static final long MAX_MEMORY_THRESHOLD = 1L << 30;
+    
+    private final long memoryThreshold;
+    private final long replayMapThreshold;
+    private final BufferPool pool = BufferPool.shared();
+    private final Semaphore diskPermits;
+    private boolean holdsDiskPermit = false;
+    
+    // Exactly one backing is active until the spool is replayed or closed
+    private BufferPool.Lease memory;
+    private int memoryLength;
+    private Path file;
+    private FileChannel fileOut;
+    
+    private long size = 0;
+    private boolean handedOff = false;
+    private boolean discarded = false;
+    
+    public HybridSpool(long memoryThreshold, long replayMapThreshold, 
+                       Optional<Long> expectedLength) throws IOException {
+        this(memoryThreshold, replayMapThreshold, expectedLength, null);
+    }
+    
+    /**
+     * @param diskPermits one permit is taken before a temp file is created and
+     *                    held until the spool is discarded or closed; null for no limit
+     */
+    public HybridSpool(long memoryThreshold, long replayMapThreshold, 
+                       Optional<Long> expectedLength, Semaphore diskPermits) throws IOException {
+        this.diskPermits = diskPermits;
+        this.memoryThreshold = Math.min(memoryThreshold, MAX_MEMORY_THRESHOLD);
+        this.replayMapThreshold = replayMapThreshold;
+        
+        long hint = expectedLength.orElse(-1L);
+        if (hint > this.memoryThreshold) {
+            openFile();
+        } else {
+            long initial = Math.min(INITIAL_MEMORY_CAPACITY, this.memoryThreshold);
+            if (hint >= 0) {
+                initial = Math.min(initial, hint);
+            }
+            memory = pool.lease((int) Math.max(initial, 1));
+        }
+    }
+    
+    /**
+     * Append the remaining bytes of {@code chunk}, leaving its position at its limit
+     */
+    public void write(ByteBuffer chunk) throws IOException {
+        int count = chunk.remaining();
+        
+        if (discarded) {
+            chunk.position(chunk.limit());
+            return;
+        }
+        
+        if (memory != null && size + count > memoryThreshold) {
+            spill();
+        }
+        
+        if (memory != null) {
+            ensureMemoryCapacity(memoryLength + count);
+            chunk.get(memory.array(), memoryLength, count);
+            memoryLength += count;
+        } else {
+            while (chunk.hasRemaining()) {
+                fileOut.write(chunk);
+            }
+        }
+        
+        size += count;
+    }
+    
+    /**
+     * Bytes written so far
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Free the held bytes now; later writes are dropped and replay is empty
+     */
+    public void discard() throws IOException {
+        if (discarded) {
+            return;
+        }
+        discarded = true;
+        freeStorage();
+        file = null;
+        releaseDiskPermit();
+    }
+    
+    public boolean isDiscarded() {
+        return discarded;
+    }
+    
+    /**
+     * Whether the upload ended up in a temp file
+     */
+    public boolean isOnDisk() {
+        return file != null;
+    }
+    
+    /**
+     * Replay the spooled bytes; the returned source owns them and frees them on close
+     */
+    public ByteSource openReplay() throws IOException {
+        if (handedOff) {
+            throw new IllegalStateException("Spool already replayed");
+        }
+        
+        if (discarded) {
+            handedOff = true;
+            return new MemoryByteSource(new byte[0]);
+        }
+        
+        if (memory != null) {
+            BufferPool.Lease lease = memory;
+            memory = null;
+            handedOff = true;
+            return new MemoryByteSource(lease, memoryLength);
+        }
+        
+        fileOut.close();
+        ByteSource replay = new FileByteSource(file, true, replayMapThreshold);
+        handedOff = true;
+        return replay;
+    }
+    
+    private void ensureMemoryCapacity(int needed) {
+        if (needed <= memory.capacity()) {
+            return;
+        }
+        
+        long grown = Math.max(needed, (long) memory.capacity() * 2);
+        BufferPool.Lease larger = pool.lease((int) Math.min(grown, memoryThreshold));
+        System.arraycopy(memory.array(), 0, larger.array(), 0, memoryLength);
+        memory.release();
+        memory = larger;
+    }
+    
+    private void spill() throws IOException {
+        openFile();
+        ByteBuffer held = ByteBuffer.wrap(memory.array(), 0, memoryLength);
+        while (held.hasRemaining()) {
+            fileOut.write(held);
+        }
+        memory.release();
+        memory = null;
+        memoryLength = 0;
+    }
+    
+    private void openFile() throws IOException {
+        acquireDiskPermit();
+        try {
+            file = Files.createTempFile("ingest-", ".tmp");
+            fileOut = FileChannel.open(file, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+                file = null;
+            }
+            releaseDiskPermit();
+            throw e;
+        }
+    }
+    
+    private void acquireDiskPermit() throws IOException {
+        if (diskPermits == null) {
+            return;
+        }
+        try {
+            diskPermits.acquire();
+            holdsDiskPermit = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to spool to disk");
+        }
+    }
+    
+    private void releaseDiskPermit() {
+        if (holdsDiskPermit) {
+            holdsDiskPermit = false;
+            diskPermits.release();
+        }
+    }
+    
+    /**
+     * Discard the spool unless it was handed to a replay source
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!handedOff) {
+                freeStorage();
+            } else if (fileOut != null) {
+                fileOut.close();
+            }
+        } finally {
+            releaseDiskPermit();
+        }
+    }
+    
+    private void freeStorage() throws IOException {
+        if (memory != null) {
+            memory.release();
+            memory = null;
+        }
+        if (fileOut != null) {
+            fileOut.close();
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Warning: Failed to delete temp file: " + file);
+            }
+        }
+    }
+}
@@ -6,30 +6,85 @@ import java.util.Arrays;
 
 /**
  * Adapter to use InputStream as ByteSource
+ *
+ * In adaptive mode the chunk size starts small and follows the stream: it
+ * grows while reads come back full and faster, and shrinks when they come
+ * back mostly empty. Reads are capped at the current size, which is also
+ * published through {@link #preferredChunkSize()}. A source built with an
+ * explicit chunk size publishes that size instead; the default constructor
+ * leaves the choice to the caller.
  */
 public class InputStreamByteSource implements ByteSource {
     private final InputStream input;
     private final int chunkSize;
+    private final boolean sizeDeclared;
+    private final AdaptiveChunkSizer sizer;
     
     public InputStreamByteSource(InputStream input, int chunkSize) {
+        this(input, chunkSize, true);
+    }
+    
+    private InputStreamByteSource(InputStream input, int chunkSize, boolean sizeDeclared) {
         this.input = input;
         this.chunkSize = chunkSize;
+        this.sizeDeclared = sizeDeclared;
+        this.sizer = null;
+    }
+    
+    private InputStreamByteSource(InputStream input, AdaptiveChunkSizer sizer) {
+        this.input = input;
+        this.chunkSize = 0;
+        this.sizeDeclared = false;
+        this.sizer = sizer;
     }
     
     public InputStreamByteSource(InputStream input) {
-        this(input, 8192); // 8KB default
+        this(input, DEFAULT_CHUNK_SIZE, false); // 8KB default
+    }
+    
+    /**
+     * Source whose chunk size adapts between {@code minChunkSize} and {@code maxChunkSize}
+     */
+    public static InputStreamByteSource adaptive(InputStream input, int minChunkSize, int maxChunkSize) {
+        return new InputStreamByteSource(input, new AdaptiveChunkSizer(minChunkSize, maxChunkSize));
+    }
+    
+    public boolean isAdaptive() {
+        return sizer != null;
+    }
+    
+    @Override
+    public int preferredChunkSize() {
+        if (sizer != null) {
+            return sizer.getChunkSize();
+        }
+        return sizeDeclared ? chunkSize : 0;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (sizer == null) {
+            return input.read(buffer, offset, length);
+        }
+        
+        int requested = Math.min(length, sizer.getChunkSize());
+        long start = System.nanoTime();
+        int bytesRead = input.read(buffer, offset, requested);
+        sizer.record(requested, bytesRead, System.nanoTime() - start);
+        return bytesRead;
     }
     
     @Override
     public byte[] nextChunk() throws IOException {
-        byte[] buffer = new byte[chunkSize];
-        int bytesRead = input.read(buffer);
+        int size = sizer != null ? sizer.getChunkSize() : chunkSize;
+        byte[] buffer = new byte[size];
+        int bytesRead = read(buffer, 0, size);
         
         if (bytesRead <= 0) {
             return new byte[0]; // EOF
         }
         
-        if (bytesRead < chunkSize) {
+        if (bytesRead < size) {
             return Arrays.copyOf(buffer, bytesRead);
         }
         
@@ -40,4 +95,4 @@ public class InputStreamByteSource implements ByteSource {
     public void close() throws IOException {
         input.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.company.ingest.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ByteSource over bytes already held in memory (for replaying small spools)
+ */
+public class MemoryByteSource implements ByteSource {
+    private final ByteBuffer data;
+    private final BufferPool.Lease lease;
+    
+    public MemoryByteSource(byte[] data) {
+        this(ByteBuffer.wrap(data), null);
+    }
+    
+    /**
+     * Source over the first {@code length} bytes of a pooled buffer, released on close
+     */
+    MemoryByteSource(BufferPool.Lease lease, int length) {
+        this(lease.buffer(), lease);
+        data.limit(length);
+    }
+    
+    private MemoryByteSource(ByteBuffer data, BufferPool.Lease lease) {
+        this.data = data;
+        this.lease = lease;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (!data.hasRemaining()) {
+            return -1;
+        }
+        
+        int count = Math.min(length, data.remaining());
+        data.get(buffer, offset, count);
+        return count;
+    }
+    
+    @Override
+    public ByteBuffer nextBuffer() throws IOException {
+        // Hand out the rest in one read-only view; no copy needed
+        ByteBuffer view = data.asReadOnlyBuffer();
+        data.position(data.limit());
+        return view;
+    }
+    
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long total = data.remaining();
+        while (data.hasRemaining()) {
+            target.write(data);
+        }
+        return total;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (lease != null) {
+            lease.close();
+        }
+    }
+}
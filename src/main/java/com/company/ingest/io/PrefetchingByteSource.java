@@ -0,0 +1,215 @@
+package com.company.ingest.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorator that reads ahead of the consumer on a background thread.
+ *
+ * The reader fills a fixed ring of {@code depth} pooled buffers and hands them
+ * over through a bounded queue, so the next chunk is read from a slow source
+ * while the current one is being hashed and spooled. Memory is capped at
+ * {@code depth * chunkSize}. A read failure in the background is rethrown
+ * from the consumer's next read after the chunks read before it, and
+ * {@link #close()} stops the reader and closes the delegate.
+ */
+public class PrefetchingByteSource implements ByteSource {
+    
+    public static final int DEFAULT_DEPTH = 2;
+    
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    
+    private final ByteSource delegate;
+    private final BlockingQueue<Slot> free;
+    private final BlockingQueue<Slot> filled;
+    private final Slot[] slots;
+    private final Slot endOfStream = new Slot(null);
+    private final Thread reader;
+    
+    private volatile boolean closed = false;
+    private volatile Throwable failure;
+    
+    private Slot current;
+    private boolean finished = false;
+    
+    public PrefetchingByteSource(ByteSource delegate) {
+        this(delegate, DEFAULT_DEPTH, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public PrefetchingByteSource(ByteSource delegate, int depth, int chunkSize) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Prefetch depth must be at least 1: " + depth);
+        }
+        
+        this.delegate = delegate;
+        this.free = new ArrayBlockingQueue<>(depth);
+        this.filled = new ArrayBlockingQueue<>(depth + 1); // room for the end marker
+        this.slots = new Slot[depth];
+        for (int i = 0; i < depth; i++) {
+            slots[i] = new Slot(BufferPool.shared().lease(chunkSize));
+            free.add(slots[i]);
+        }
+        
+        this.reader = new Thread(this::readAhead, "ingest-prefetch-" + THREAD_COUNTER.incrementAndGet());
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+    
+    /**
+     * Background loop: fill free slots until EOF, failure or close
+     */
+    private void readAhead() {
+        try {
+            while (!closed) {
+                Slot slot = free.take();
+                ByteBuffer buffer = slot.buffer;
+                buffer.clear();
+                
+                int bytesRead;
+                do {
+                    bytesRead = delegate.read(buffer);
+                } while (bytesRead == 0);
+                
+                if (bytesRead == -1) {
+                    break;
+                }
+                
+                buffer.flip();
+                filled.put(slot);
+            }
+        } catch (InterruptedException e) {
+            // Interrupted by close()
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            // filled always has room for the marker: it holds at most depth slots
+            filled.offer(endOfStream);
+            if (closed) {
+                releaseBuffers();
+            }
+        }
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        
+        ByteBuffer chunk = nextFilled();
+        if (chunk == null) {
+            return -1;
+        }
+        
+        int count = Math.min(length, chunk.remaining());
+        chunk.get(buffer, offset, count);
+        return count;
+    }
+    
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (!target.hasRemaining()) {
+            return 0;
+        }
+        
+        ByteBuffer chunk = nextFilled();
+        if (chunk == null) {
+            return -1;
+        }
+        
+        int count = Math.min(target.remaining(), chunk.remaining());
+        int chunkLimit = chunk.limit();
+        chunk.limit(chunk.position() + count);
+        target.put(chunk);
+        chunk.limit(chunkLimit);
+        return count;
+    }
+    
+    /**
+     * Chunk with bytes left to consume, recycling exhausted slots; null at EOF
+     */
+    private ByteBuffer nextFilled() throws IOException {
+        if (closed) {
+            throw new IOException("Source is closed");
+        }
+        
+        if (current != null && current.buffer.hasRemaining()) {
+            return current.buffer;
+        }
+        
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        
+        if (finished) {
+            return null;
+        }
+        
+        Slot next;
+        try {
+            next = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for read-ahead");
+        }
+        
+        if (next == endOfStream) {
+            finished = true;
+            Throwable cause = failure;
+            if (cause != null) {
+                throw new IOException("Read-ahead failed: " + cause.getMessage(), cause);
+            }
+            return null;
+        }
+        
+        current = next;
+        return current.buffer;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        
+        reader.interrupt();
+        try {
+            // Closing the delegate also unblocks a reader stuck in a stream read
+            delegate.close();
+        } finally {
+            try {
+                reader.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // A reader that has not exited yet releases the buffers itself on exit
+            if (!reader.isAlive()) {
+                releaseBuffers();
+            }
+        }
+    }
+    
+    private void releaseBuffers() {
+        for (Slot slot : slots) {
+            slot.lease.close();
+        }
+    }
+    
+    private static final class Slot {
+        final BufferPool.Lease lease;
+        final ByteBuffer buffer;
+        
+        Slot(BufferPool.Lease lease) {
+            this.lease = lease;
+            this.buffer = lease == null ? null : lease.buffer();
+        }
+    }
+}
@@ -1,53 +1,59 @@
 package com.company.ingest.mime;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 public class MimeDetector {
     
+    /**
+     * Registry installed at runtime; null means the bundled defaults
+     */
+    private static final AtomicReference<SignatureRegistry> INSTALLED = new AtomicReference<>();
+    
     /**
      * Detect MIME type from file signature (magic bytes)
      */
     public static String detect(byte[] header) {
-        if (header == null || header.length < 4) {
+        return detect(header, registry());
+    }
+    
+    /**
+     * Detect MIME type against a custom signature registry
+     */
+    public static String detect(byte[] header, SignatureRegistry registry) {
+        return detect(header, header == null ? 0 : header.length, registry);
+    }
+    
+    /**
+     * Detect from the first {@code length} bytes of a capture buffer, without copying them out
+     */
+    public static String detect(byte[] header, int length, SignatureRegistry registry) {
+        if (header == null || length < 4) {
             return "application/octet-stream";
         }
         
-        // PDF: %PDF
-        if (header.length >= 4 && 
-            header[0] == 0x25 && header[1] == 0x50 && 
-            header[2] == 0x44 && header[3] == 0x46) {
-            return "application/pdf";
-        }
-        
-        // PNG: 89 50 4E 47 0D 0A 1A 0A
-        if (header.length >= 8 &&
-            header[0] == (byte)0x89 && header[1] == 0x50 && 
-            header[2] == 0x4E && header[3] == 0x47 &&
-            header[4] == 0x0D && header[5] == 0x0A &&
-            header[6] == 0x1A && header[7] == 0x0A) {
-            return "image/png";
-        }
-        
-        // DOCX (ZIP-based): PK (50 4B) + look for [Content_Types].xml
-        if (header.length >= 4 &&
-            header[0] == 0x50 && header[1] == 0x4B &&
-            (header[2] == 0x03 || header[2] == 0x05 || header[2] == 0x07) &&
-            (header[3] == 0x04 || header[3] == 0x06 || header[3] == 0x08)) {
-            
-            // Check if it contains Office Open XML signatures
-            String headerStr = new String(header, 0, Math.min(header.length, 512));
-            if (headerStr.contains("word/") || headerStr.contains("[Content_Types].xml")) {
-                return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
-            }
-            
-            return "application/zip";
-        }
-        
-        // JPEG: FF D8 FF
-        if (header.length >= 3 &&
-            header[0] == (byte)0xFF && header[1] == (byte)0xD8 && header[2] == (byte)0xFF) {
-            return "image/jpeg";
-        }
-        
-        return "application/octet-stream";
+        String mime = registry.detect(header, length);
+        return mime != null ? mime : "application/octet-stream";
+    }
+    
+    /**
+     * The registry {@link #detect(byte[])} currently uses
+     */
+    public static SignatureRegistry registry() {
+        SignatureRegistry installed = INSTALLED.get();
+        return installed != null ? installed : SignatureRegistry.defaults();
+    }
+    
+    /**
+     * Swap the registry used by {@link #detect(byte[])}; null restores the bundled defaults
+     *
+     * Registries are immutable, so detections in flight finish under the one
+     * they read and nothing waits on the swap.
+     *
+     * @return the registry that was in use
+     */
+    public static SignatureRegistry useRegistry(SignatureRegistry registry) {
+        SignatureRegistry previous = INSTALLED.getAndSet(registry);
+        return previous != null ? previous : SignatureRegistry.defaults();
     }
     
     /**
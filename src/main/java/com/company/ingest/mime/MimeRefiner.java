@@ -0,0 +1,15 @@
+package com.company.ingest.mime;
+
+/**
+ * Narrows a signature match by looking further into the header, e.g. ZIP to DOCX
+ */
+@FunctionalInterface
+public interface MimeRefiner {
+    
+    /**
+     * @param mime   the MIME type the signature matched
+     * @param header the header bytes seen so far, in its first {@code length} bytes
+     * @return a more specific MIME type, or {@code mime} unchanged
+     */
+    String refine(String mime, byte[] header, int length);
+}
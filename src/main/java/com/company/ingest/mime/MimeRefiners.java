@@ -0,0 +1,39 @@
+package com.company.ingest.mime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Built-in refiners, by the name a signature database refers to them
+ */
+public final class MimeRefiners {
+    
+    /**
+     * Office Open XML documents are ZIPs whose first entries name the package parts
+     */
+    public static final MimeRefiner OFFICE_OPEN_XML = (mime, header, length) -> {
+        String headerStr = new String(header, 0, Math.min(length, 512), StandardCharsets.ISO_8859_1);
+        if (headerStr.contains("word/") || headerStr.contains("[Content_Types].xml")) {
+            return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+        }
+        return mime;
+    };
+    
+    private static final Map<String, MimeRefiner> BY_NAME = Map.of(
+        "office-open-xml", OFFICE_OPEN_XML
+    );
+    
+    private MimeRefiners() {
+    }
+    
+    /**
+     * @throws IllegalArgumentException if no refiner has this name
+     */
+    public static MimeRefiner byName(String name) {
+        MimeRefiner refiner = BY_NAME.get(name);
+        if (refiner == null) {
+            throw new IllegalArgumentException("Unknown refiner '" + name + "', expected one of " + BY_NAME.keySet());
+        }
+        return refiner;
+    }
+}
@@ -0,0 +1,143 @@
+package com.company.ingest.mime;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Magic bytes that identify a MIME type at a fixed offset in the header
+ *
+ * A header byte matches when {@code (header & mask) == magic}; the default
+ * mask of 0xff compares whole bytes. Among matching signatures the highest
+ * priority wins, then the longest.
+ */
+public final class Signature {
+    private static final HexFormat HEX = HexFormat.of();
+    
+    private final String mime;
+    private final int offset;
+    private final byte[] magic;
+    private final byte[] mask;
+    private final int priority;
+    
+    public Signature(String mime, int offset, byte[] magic) {
+        this(mime, offset, magic, null, 0);
+    }
+    
+    /**
+     * @param mask     per-byte mask, same length as magic; null compares whole bytes
+     * @param priority higher wins over any lower-priority match, however long
+     */
+    public Signature(String mime, int offset, byte[] magic, byte[] mask, int priority) {
+        if (offset < 0 || magic.length == 0) {
+            throw new IllegalArgumentException(String.format(
+                "Signature for %s needs a non-negative offset and magic bytes: offset=%d, length=%d",
+                mime, offset, magic.length));
+        }
+        if (mask != null && mask.length != magic.length) {
+            throw new IllegalArgumentException(String.format(
+                "Signature for %s has %d magic bytes but %d mask bytes", mime, magic.length, mask.length));
+        }
+        this.mime = mime;
+        this.offset = offset;
+        this.mask = mask != null ? mask.clone() : filled(magic.length);
+        this.magic = magic.clone();
+        for (int i = 0; i < this.magic.length; i++) {
+            this.magic[i] &= this.mask[i];
+        }
+        this.priority = priority;
+    }
+    
+    /**
+     * Signature from hex magic bytes, e.g. {@code of("image/jpeg", 0, "ffd8ff")}
+     */
+    public static Signature of(String mime, int offset, String hexMagic) {
+        return new Signature(mime, offset, HEX.parseHex(hexMagic));
+    }
+    
+    public String getMime() {
+        return mime;
+    }
+    
+    public int getOffset() {
+        return offset;
+    }
+    
+    /**
+     * Magic bytes, already masked
+     */
+    public byte[] getMagic() {
+        return magic.clone();
+    }
+    
+    public byte[] getMask() {
+        return mask.clone();
+    }
+    
+    public int getPriority() {
+        return priority;
+    }
+    
+    /**
+     * Header bytes needed to match: offset plus magic length
+     */
+    public int getEnd() {
+        return offset + magic.length;
+    }
+    
+    /**
+     * Whether this signature matches the header on its own, without the automaton
+     */
+    public boolean matches(byte[] header) {
+        if (getEnd() > header.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & mask[i]) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    byte magicAt(int index) {
+        return magic[index];
+    }
+    
+    byte maskAt(int index) {
+        return mask[index];
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Signature signature
+            && mime.equals(signature.mime) && offset == signature.offset && priority == signature.priority
+            && Arrays.equals(magic, signature.magic) && Arrays.equals(mask, signature.mask);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * (31 * mime.hashCode() + offset) + Arrays.hashCode(magic);
+    }
+    
+    @Override
+    public String toString() {
+        return mime + "@" + offset + ":" + HEX.formatHex(magic)
+            + (allSet(mask) ? "" : "&" + HEX.formatHex(mask))
+            + (priority == 0 ? "" : " priority=" + priority);
+    }
+    
+    private static byte[] filled(int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) 0xff);
+        return bytes;
+    }
+    
+    private static boolean allSet(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != (byte) 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+package com.company.ingest.mime;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Signatures loaded from a text file, with the compiled automaton cached on disk
+ *
+ * The file format is documented in the bundled {@code signatures.db}. The
+ * cache is keyed by the SHA-256 of the file's contents, so an edited file is
+ * recompiled once and every later start reads the compiled form directly.
+ * {@link #install()} swaps the new registry into {@link MimeDetector}
+ * without waiting for uploads being detected under the old one.
+ */
+public class SignatureDatabase {
+    
+    /** Classpath resource with the signatures used when no database is installed */
+    public static final String BUNDLED = "/com/company/ingest/mime/signatures.db";
+    
+    private static final int CACHE_MAGIC = 0x53494743; // "SIGC"
+    private static final int CACHE_VERSION = 1;
+    
+    private final Path source;
+    private final Path cacheDir;
+    
+    /**
+     * @param source   the signature file
+     * @param cacheDir where compiled forms are kept; created if missing
+     */
+    public SignatureDatabase(Path source, Path cacheDir) {
+        this.source = source;
+        this.cacheDir = cacheDir;
+    }
+    
+    /**
+     * Registry for the file's current contents, compiled only if no cached form exists
+     */
+    public SignatureRegistry load() throws IOException {
+        byte[] text = Files.readAllBytes(source);
+        Path cached = cacheDir.resolve("signatures-" + sha256Hex(text) + ".bin");
+        
+        if (Files.exists(cached)) {
+            try {
+                return readCache(cached);
+            } catch (IOException | RuntimeException e) {
+                // Corrupt or from another version; compile afresh and overwrite it
+            }
+        }
+        
+        SignatureRegistry registry = parse(new StringReader(new String(text, StandardCharsets.UTF_8)), 
+                                           source.toString());
+        writeCache(registry, cached);
+        return registry;
+    }
+    
+    /**
+     * Load the file and make it the registry {@link MimeDetector#detect(byte[])} uses
+     *
+     * Detections already under way finish with the registry they started with.
+     */
+    public SignatureRegistry install() throws IOException {
+        SignatureRegistry registry = load();
+        MimeDetector.useRegistry(registry);
+        return registry;
+    }
+    
+    /**
+     * Parse and compile a signature file
+     *
+     * @param origin file name used in error messages
+     */
+    public static SignatureRegistry parse(Reader reader, String origin) throws IOException {
+        SignatureRegistry.Builder builder = SignatureRegistry.builder();
+        BufferedReader lines = new BufferedReader(reader);
+        HexFormat hex = HexFormat.of();
+        
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            
+            String[] fields = trimmed.split("\\s+");
+            try {
+                if (fields[0].equals("refine")) {
+                    if (fields.length != 3) {
+                        throw new IllegalArgumentException("expected: refine <mime> <refiner>");
+                    }
+                    builder.refine(fields[1], fields[2]);
+                    continue;
+                }
+                
+                if (fields.length < 3) {
+                    throw new IllegalArgumentException("expected: <mime> <offset> <hex magic> [mask=<hex>] [priority=<n>]");
+                }
+                byte[] mask = null;
+                int priority = 0;
+                for (int i = 3; i < fields.length; i++) {
+                    if (fields[i].startsWith("mask=")) {
+                        mask = hex.parseHex(fields[i].substring(5));
+                    } else if (fields[i].startsWith("priority=")) {
+                        priority = Integer.parseInt(fields[i].substring(9));
+                    } else {
+                        throw new IllegalArgumentException("unknown option '" + fields[i] + "'");
+                    }
+                }
+                builder.add(new Signature(fields[0], Integer.parseInt(fields[1]), 
+                                          hex.parseHex(fields[2]), mask, priority));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("%s:%d: %s", origin, lineNumber, e.getMessage()), e);
+            }
+        }
+        return builder.build();
+    }
+    
+    /**
+     * The bundled signatures; no cache, as they are few and the classpath is read-only
+     */
+    static SignatureRegistry loadBundled() {
+        try (InputStream in = SignatureDatabase.class.getResourceAsStream(BUNDLED)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing bundled signature database " + BUNDLED);
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8), BUNDLED);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static SignatureRegistry readCache(Path cached) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cached)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+                throw new IOException("Not a version " + CACHE_VERSION + " signature cache: " + cached);
+            }
+            return SignatureRegistry.readFrom(in);
+        }
+    }
+    
+    /**
+     * Write through a temp file so concurrent loaders never see a partial cache
+     */
+    private void writeCache(SignatureRegistry registry, Path cached) throws IOException {
+        Files.createDirectories(cacheDir);
+        Path temp = Files.createTempFile(cacheDir, "signatures-", ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                registry.writeTo(out);
+            }
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.company.ingest.mime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Magic-byte signatures compiled into one deterministic automaton over the header
+ *
+ * Every signature is a path in a trie rooted at header byte 0, with
+ * wildcard steps up to its offset. The trie is determinised when the
+ * registry is built, so detection reads each header byte at most once and
+ * follows a single transition per byte: its cost depends on the bytes
+ * inspected, not on the number of signatures. When several signatures match,
+ * the highest priority wins, then the longest, then the one registered first.
+ *
+ * Registries are immutable; see {@link SignatureDatabase} for loading one
+ * from a file and {@link MimeDetector#useRegistry} for swapping it in.
+ */
+public final class SignatureRegistry {
+    
+    private final List<Signature> signatures;
+    private final Map<String, String> refinerNames;
+    private final Map<String, MimeRefiner> refiners;
+    private final int maxSignatureEnd;
+    
+    // Automaton, one entry per state; state 0 is the start and -1 is dead
+    private final byte[][] keys;
+    private final int[][] targets;
+    private final int[] otherwise;
+    private final int[] accepts;
+    
+    private SignatureRegistry(Builder builder) {
+        this(builder.signatures, builder.refinerNames, new Compiler(builder.signatures));
+    }
+    
+    private SignatureRegistry(List<Signature> signatures, Map<String, String> refinerNames, Compiler compiled) {
+        this(signatures, refinerNames,
+             compiled.keys.toArray(new byte[0][]),
+             compiled.targets.toArray(new int[0][]),
+             compiled.otherwise.stream().mapToInt(Integer::intValue).toArray(),
+             compiled.accepts.stream().mapToInt(Integer::intValue).toArray());
+    }
+    
+    private SignatureRegistry(List<Signature> signatures, Map<String, String> refinerNames,
+                              byte[][] keys, int[][] targets, int[] otherwise, int[] accepts) {
+        this.signatures = Collections.unmodifiableList(new ArrayList<>(signatures));
+        this.refinerNames = Collections.unmodifiableMap(new LinkedHashMap<>(refinerNames));
+        Map<String, MimeRefiner> resolved = new LinkedHashMap<>();
+        refinerNames.forEach((mime, name) -> resolved.put(mime, MimeRefiners.byName(name)));
+        this.refiners = Collections.unmodifiableMap(resolved);
+        this.maxSignatureEnd = signatures.stream().mapToInt(Signature::getEnd).max().orElse(0);
+        this.keys = keys;
+        this.targets = targets;
+        this.otherwise = otherwise;
+        this.accepts = accepts;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * The signatures bundled with the library, from {@link SignatureDatabase#BUNDLED}
+     */
+    public static SignatureRegistry defaults() {
+        return Defaults.REGISTRY;
+    }
+    
+    /**
+     * MIME type of the best matching signature, refined if a refiner is registered; null if none match
+     */
+    public String detect(byte[] header) {
+        return detect(header, header.length);
+    }
+    
+    /**
+     * As {@link #detect(byte[])}, over the first {@code length} bytes of a larger buffer
+     */
+    public String detect(byte[] header, int length) {
+        Signature match = match(header, length);
+        if (match == null) {
+            return null;
+        }
+        MimeRefiner refiner = refiners.get(match.getMime());
+        return refiner != null ? refiner.refine(match.getMime(), header, length) : match.getMime();
+    }
+    
+    /**
+     * Best matching signature, without refinement; null if none match
+     */
+    public Signature match(byte[] header) {
+        return match(header, header.length);
+    }
+    
+    /**
+     * As {@link #match(byte[])}, over the first {@code length} bytes of a larger buffer
+     */
+    public Signature match(byte[] header, int length) {
+        int state = 0;
+        int best = -1;
+        for (int i = 0; i < length && state >= 0; i++) {
+            state = step(state, header[i]);
+            if (state >= 0 && accepts[state] >= 0 && (best < 0 
+                    || signatures.get(accepts[state]).getPriority() >= signatures.get(best).getPriority())) {
+                best = accepts[state];
+            }
+        }
+        return best >= 0 ? signatures.get(best) : null;
+    }
+    
+    public List<Signature> getSignatures() {
+        return signatures;
+    }
+    
+    /**
+     * Refiner names by the MIME type they refine
+     */
+    public Map<String, String> getRefiners() {
+        return refinerNames;
+    }
+    
+    /**
+     * Header bytes needed to evaluate every signature: the largest offset plus magic length
+     */
+    public int getMaxSignatureEnd() {
+        return maxSignatureEnd;
+    }
+    
+    /**
+     * Number of automaton states, for diagnostics
+     */
+    public int getStateCount() {
+        return keys.length;
+    }
+    
+    private int step(int state, byte b) {
+        byte[] stateKeys = keys[state];
+        int value = Byte.toUnsignedInt(b);
+        int low = 0;
+        int high = stateKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int key = Byte.toUnsignedInt(stateKeys[mid]);
+            if (key < value) {
+                low = mid + 1;
+            } else if (key > value) {
+                high = mid - 1;
+            } else {
+                return targets[state][mid];
+            }
+        }
+        return otherwise[state];
+    }
+    
+    /**
+     * Write the signatures and the compiled automaton, for {@link #readFrom}
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(signatures.size());
+        for (Signature signature : signatures) {
+            out.writeUTF(signature.getMime());
+            out.writeInt(signature.getOffset());
+            out.writeInt(signature.getPriority());
+            writeBytes(out, signature.getMagic());
+            writeBytes(out, signature.getMask());
+        }
+        out.writeInt(refinerNames.size());
+        for (Map.Entry<String, String> refiner : refinerNames.entrySet()) {
+            out.writeUTF(refiner.getKey());
+            out.writeUTF(refiner.getValue());
+        }
+        out.writeInt(keys.length);
+        for (int state = 0; state < keys.length; state++) {
+            writeBytes(out, keys[state]);
+            for (int target : targets[state]) {
+                out.writeInt(target);
+            }
+            out.writeInt(otherwise[state]);
+            out.writeInt(accepts[state]);
+        }
+    }
+    
+    /**
+     * Registry as written by {@link #writeTo}, without recompiling
+     */
+    static SignatureRegistry readFrom(DataInputStream in) throws IOException {
+        int signatureCount = in.readInt();
+        List<Signature> signatures = new ArrayList<>(signatureCount);
+        for (int i = 0; i < signatureCount; i++) {
+            String mime = in.readUTF();
+            int offset = in.readInt();
+            int priority = in.readInt();
+            byte[] magic = readBytes(in);
+            byte[] mask = readBytes(in);
+            signatures.add(new Signature(mime, offset, magic, mask, priority));
+        }
+        int refinerCount = in.readInt();
+        Map<String, String> refinerNames = new LinkedHashMap<>();
+        for (int i = 0; i < refinerCount; i++) {
+            refinerNames.put(in.readUTF(), in.readUTF());
+        }
+        int stateCount = in.readInt();
+        byte[][] keys = new byte[stateCount][];
+        int[][] targets = new int[stateCount][];
+        int[] otherwise = new int[stateCount];
+        int[] accepts = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            keys[state] = readBytes(in);
+            targets[state] = new int[keys[state].length];
+            for (int k = 0; k < targets[state].length; k++) {
+                targets[state][k] = in.readInt();
+            }
+            otherwise[state] = in.readInt();
+            accepts[state] = in.readInt();
+        }
+        return new SignatureRegistry(signatures, refinerNames, keys, targets, otherwise, accepts);
+    }
+    
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    public static class Builder {
+        private final List<Signature> signatures = new ArrayList<>();
+        private final Map<String, String> refinerNames = new LinkedHashMap<>();
+        
+        private Builder() {
+        }
+        
+        public Builder add(Signature signature) {
+            signatures.add(signature);
+            return this;
+        }
+        
+        public Builder addAll(List<Signature> signatures) {
+            this.signatures.addAll(signatures);
+            return this;
+        }
+        
+        /**
+         * Run a named {@link MimeRefiners built-in refiner} whenever a signature for this MIME type wins
+         */
+        public Builder refine(String mime, String refinerName) {
+            MimeRefiners.byName(refinerName);
+            refinerNames.put(mime, refinerName);
+            return this;
+        }
+        
+        public SignatureRegistry build() {
+            return new SignatureRegistry(this);
+        }
+    }
+    
+    /**
+     * Subset construction from the wildcard trie of all signatures
+     *
+     * A trie node is identified by (signature, depth) while the paths are
+     * unmerged; a DFA state is the set of signatures still alive at the same
+     * depth, which is all the trie needs to know to go on.
+     */
+    private static class Compiler {
+        final List<byte[]> keys = new ArrayList<>();
+        final List<int[]> targets = new ArrayList<>();
+        final List<Integer> otherwise = new ArrayList<>();
+        final List<Integer> accepts = new ArrayList<>();
+        
+        private final List<Signature> signatures;
+        private final Map<StateKey, Integer> states = new HashMap<>();
+        private final List<StateKey> pending = new ArrayList<>();
+        
+        Compiler(List<Signature> signatures) {
+            this.signatures = signatures;
+            int[] all = new int[signatures.size()];
+            Arrays.setAll(all, i -> i);
+            stateFor(new StateKey(0, all));
+            
+            for (int next = 0; next < pending.size(); next++) {
+                expand(next, pending.get(next));
+            }
+        }
+        
+        /**
+         * Transitions out of a state whose live signatures have matched {@code depth} bytes
+         */
+        private void expand(int id, StateKey state) {
+            int depth = state.depth;
+            TreeMap<Integer, List<Integer>> byByte = new TreeMap<>();
+            List<Integer> wildcard = new ArrayList<>();
+            for (int index : state.live) {
+                Signature signature = signatures.get(index);
+                if (signature.getEnd() <= depth) {
+                    continue;
+                }
+                int mask = depth < signature.getOffset() 
+                    ? 0 : Byte.toUnsignedInt(signature.maskAt(depth - signature.getOffset()));
+                if (mask == 0) {
+                    wildcard.add(index);
+                } else if (mask == 0xff) {
+                    int b = Byte.toUnsignedInt(signature.magicAt(depth - signature.getOffset()));
+                    byByte.computeIfAbsent(b, k -> new ArrayList<>()).add(index);
+                } else {
+                    // A partial mask matches several byte values; give each its own edge
+                    int magic = Byte.toUnsignedInt(signature.magicAt(depth - signature.getOffset()));
+                    for (int b = 0; b < 256; b++) {
+                        if ((b & mask) == magic) {
+                            byByte.computeIfAbsent(b, k -> new ArrayList<>()).add(index);
+                        }
+                    }
+                }
+            }
+            
+            byte[] stateKeys = new byte[byByte.size()];
+            int[] stateTargets = new int[byByte.size()];
+            int k = 0;
+            for (Map.Entry<Integer, List<Integer>> edge : byByte.entrySet()) {
+                // Signatures still in their wildcard prefix follow every byte
+                List<Integer> live = new ArrayList<>(edge.getValue());
+                live.addAll(wildcard);
+                stateKeys[k] = (byte) (int) edge.getKey();
+                stateTargets[k] = stateFor(new StateKey(depth + 1, sorted(live)));
+                k++;
+            }
+            
+            keys.set(id, stateKeys);
+            targets.set(id, stateTargets);
+            otherwise.set(id, wildcard.isEmpty() ? -1 : stateFor(new StateKey(depth + 1, sorted(wildcard))));
+        }
+        
+        private int stateFor(StateKey state) {
+            Integer existing = states.get(state);
+            if (existing != null) {
+                return existing;
+            }
+            int id = pending.size();
+            states.put(state, id);
+            pending.add(state);
+            keys.add(null);
+            targets.add(null);
+            otherwise.add(-1);
+            accepts.add(acceptFor(state));
+            return id;
+        }
+        
+        /**
+         * Highest priority among the signatures ending here; live is in registration order, so the first wins ties
+         */
+        private int acceptFor(StateKey state) {
+            int accept = -1;
+            for (int index : state.live) {
+                Signature signature = signatures.get(index);
+                if (signature.getEnd() == state.depth 
+                        && (accept < 0 || signature.getPriority() > signatures.get(accept).getPriority())) {
+                    accept = index;
+                }
+            }
+            return accept;
+        }
+        
+        private static int[] sorted(List<Integer> live) {
+            return live.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+    }
+    
+    /**
+     * Bundled registry, loaded on first use
+     */
+    private static class Defaults {
+        static final SignatureRegistry REGISTRY = SignatureDatabase.loadBundled();
+    }
+    
+    /**
+     * Signatures alive after the first {@code depth} header bytes, sorted
+     */
+    private static final class StateKey {
+        final int depth;
+        final int[] live;
+        
+        StateKey(int depth, int[] live) {
+            this.depth = depth;
+            this.live = live;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateKey key && depth == key.depth && Arrays.equals(live, key.live);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * depth + Arrays.hashCode(live);
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.company.ingest.mime;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Streaming classifier for uploads no signature matched: plain text, CSV or JSON
+ *
+ * Every byte is checked for UTF-8 validity and C0 control characters. The
+ * chunk is read eight bytes at a time as a long: ASCII runs are checked with
+ * SWAR (SIMD within a register) arithmetic, and a multi-byte sequence is
+ * checked whole against masks from the word it starts. Scanning stops at the
+ * first byte that cannot be text, so binary uploads cost next to nothing.
+ *
+ * JSON and CSV are told from the first few KB and the last non-blank byte.
+ * Uploads opening with a UTF-16 BOM are checked unit by unit instead, for
+ * paired surrogates and the same control ratio, and are only ever plain text.
+ */
+public class TextSniffer {
+    
+    public static final String TEXT = "text/plain";
+    public static final String CSV = "text/csv";
+    public static final String JSON = "application/json";
+    
+    /** Share of control characters above which content is not text */
+    public static final double MAX_CONTROL_RATIO = 0.01;
+    
+    /** Leading bytes kept for the JSON and CSV structure checks */
+    static final int STRUCTURE_SAMPLE = 4096;
+    
+    private static final int MIN_CSV_LINES = 2;
+    private static final int MAX_CSV_LINES = 20;
+    
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+    
+    private static final int SCRATCH_SIZE = 8192;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    
+    /**
+     * Per lead byte: continuation bytes that follow (0 if it cannot lead)
+     * and the range of the first one, which rules out overlong forms,
+     * surrogates and code points above U+10FFFF
+     */
+    private static final int[] CONTINUATIONS = new int[256];
+    private static final int[] SECOND_LOWER = new int[256];
+    private static final int[] SECOND_UPPER = new int[256];
+    
+    /**
+     * Continuation bits of the third and fourth bytes, by continuation count
+     */
+    private static final int[] FOLLOWING_MASK = {0, 0, 0x00C00000, 0xC0C00000};
+    private static final int[] FOLLOWING = {0, 0, 0x00800000, 0x80800000};
+    
+    static {
+        // Bytes that cannot lead get a range no second byte falls in
+        Arrays.fill(SECOND_LOWER, 0x100);
+        for (int b = 0xC2; b <= 0xF4; b++) {
+            CONTINUATIONS[b] = b < 0xE0 ? 1 : b < 0xF0 ? 2 : 3;
+            SECOND_LOWER[b] = b == 0xE0 ? 0xA0 : b == 0xF0 ? 0x90 : 0x80;
+            SECOND_UPPER[b] = b == 0xED ? 0x9F : b == 0xF4 ? 0x8F : 0xBF;
+        }
+    }
+    
+    private final byte[] scratch = new byte[SCRATCH_SIZE];
+    
+    private final byte[] sample = new byte[STRUCTURE_SAMPLE];
+    private int sampleLength;
+    
+    private long total;
+    private long controls;
+    private boolean binary;
+    private int lastSignificant = -1;
+    
+    // UTF-8 sequence in progress: continuation bytes still expected and the range of the next one
+    private int pending;
+    private int lower = 0x80;
+    private int upper = 0xBF;
+    
+    // Encoding is decided from the first two bytes; UTF-16 uploads carry their byte order
+    private boolean decided;
+    private ByteOrder utf16;
+    private int oddByte = -1;
+    private boolean highSurrogate;
+    
+    /**
+     * Consume the bytes between the buffer's position and limit, leaving the position unchanged
+     */
+    public void update(ByteBuffer chunk) {
+        int start = chunk.position();
+        int limit = chunk.limit();
+        if (start == limit) {
+            return;
+        }
+        
+        if (sampleLength < STRUCTURE_SAMPLE) {
+            int n = Math.min(limit - start, STRUCTURE_SAMPLE - sampleLength);
+            chunk.get(start, sample, sampleLength, n);
+            sampleLength += n;
+        }
+        for (int i = limit - 1; i >= start; i--) {
+            int b = chunk.get(i) & 0xFF;
+            if (!isWhitespace(b)) {
+                lastSignificant = b;
+                break;
+            }
+        }
+        
+        if (!decided && sampleLength < 2) {
+            // A lone first byte waits in the sample until the encoding is known
+            total += limit - start;
+            return;
+        }
+        if (!decided) {
+            decide();
+        }
+        if (!binary) {
+            scan(chunk, start, limit);
+        }
+        total += limit - start;
+    }
+    
+    /**
+     * Whether a byte that cannot be text was seen, so {@link #mimeType()} stays null
+     */
+    public boolean isSettled() {
+        return binary;
+    }
+    
+    /**
+     * Text type of everything seen, or null if it is not text (or empty)
+     */
+    public String mimeType() {
+        if (total == 0) {
+            return null;
+        }
+        if (!decided) {
+            decide();
+        }
+        if (utf16 != null) {
+            boolean complete = oddByte < 0 && !highSurrogate;
+            return !binary && complete && controls <= total / 2 * MAX_CONTROL_RATIO ? TEXT : null;
+        }
+        if (binary || pending > 0 || controls > total * MAX_CONTROL_RATIO) {
+            return null;
+        }
+        if (looksLikeJson()) {
+            return JSON;
+        }
+        if (looksLikeCsv()) {
+            return CSV;
+        }
+        return TEXT;
+    }
+    
+    /**
+     * Whether the bytes seen so far could still begin a text upload
+     *
+     * Unlike {@link #mimeType()} a trailing incomplete UTF-8 sequence or
+     * UTF-16 unit is allowed, since the rest of it may follow.
+     */
+    public boolean couldBeText() {
+        if (total > 0 && !decided) {
+            decide();
+        }
+        long units = utf16 != null ? total / 2 : total;
+        return !binary && controls <= units * MAX_CONTROL_RATIO;
+    }
+    
+    /**
+     * Whether a captured header could begin a text upload, see {@link #couldBeText()}
+     */
+    public static boolean couldBeText(byte[] header, int length) {
+        TextSniffer sniffer = new TextSniffer();
+        sniffer.update(ByteBuffer.wrap(header, 0, length));
+        return length > 0 && sniffer.couldBeText();
+    }
+    
+    /**
+     * Pick UTF-16 or UTF-8 from the BOM, then scan the bytes held back in the sample meanwhile
+     */
+    private void decide() {
+        decided = true;
+        if (sampleLength >= 2 && sample[0] == (byte) 0xFF && sample[1] == (byte) 0xFE) {
+            utf16 = ByteOrder.LITTLE_ENDIAN;
+        } else if (sampleLength >= 2 && sample[0] == (byte) 0xFE && sample[1] == (byte) 0xFF) {
+            utf16 = ByteOrder.BIG_ENDIAN;
+        }
+        if (total > 0) {
+            scan(ByteBuffer.wrap(sample, 0, (int) total), 0, (int) total);
+        }
+    }
+    
+    /**
+     * Copy the chunk into the scratch block by block and validate it there,
+     * where word reads and byte reads are both cheap
+     */
+    private void scan(ByteBuffer chunk, int pos, int limit) {
+        if (utf16 != null) {
+            scanUtf16(chunk, pos, limit);
+            return;
+        }
+        while (pos < limit && !binary) {
+            int n = Math.min(limit - pos, SCRATCH_SIZE);
+            chunk.get(pos, scratch, 0, n);
+            scanBlock(n);
+            pos += n;
+        }
+    }
+    
+    private void scanBlock(int length) {
+        int i = 0;
+        // Finish a sequence split across blocks
+        while (pending > 0 && i < length) {
+            if (!scanByte(scratch[i++] & 0xFF)) {
+                binary = true;
+                return;
+            }
+        }
+        
+        // Whole words at a time; a sequence starting a word lies entirely within it
+        long found = 0;
+        while (i <= length - Long.BYTES) {
+            long word = (long) LONGS.get(scratch, i);
+            long high = word & HIGH;
+            if (high == 0) {
+                // Eight ASCII bytes, only counted if one is below 0x20 or DEL
+                if ((((ONES * 0x9F - word) & HIGH) | equal(word, 0x7F)) != 0) {
+                    found += asciiControls(word);
+                }
+                i += Long.BYTES;
+                continue;
+            }
+            
+            // Little-endian, so the lowest set high bit is the first non-ASCII byte
+            int ascii = Long.numberOfTrailingZeros(high) >>> 3;
+            if (ascii > 0) {
+                long prefix = -1L >>> (Long.SIZE - ascii * Byte.SIZE);
+                found += asciiControls((word & prefix) | (SPACES & ~prefix));
+                i += ascii;
+                continue;
+            }
+            
+            int sequence = (int) word;
+            int lead = sequence & 0xFF;
+            int second = (sequence >>> 8) & 0xFF;
+            int n = CONTINUATIONS[lead];
+            if (second < SECOND_LOWER[lead] || second > SECOND_UPPER[lead]
+                    || (sequence & FOLLOWING_MASK[n]) != FOLLOWING[n]) {
+                binary = true;
+                controls += found;
+                return;
+            }
+            i += n + 1;
+        }
+        controls += found;
+        
+        // Up to seven bytes left; a sequence may carry over into the next block
+        while (i < length) {
+            if (!scanByte(scratch[i++] & 0xFF)) {
+                binary = true;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Control characters in a word of eight ASCII bytes; tab, LF, FF and CR are text
+     *
+     * Each term works per byte without carries between bytes, since no
+     * ASCII byte plus 0x77 reaches 0x100.
+     */
+    private static int asciiControls(long word) {
+        long below = ONES * 0x9F - word;                // high bit set for b < 0x20
+        long fromTab = word + ONES * (0x80 - '\t');      // high bit set for b >= 0x09
+        long pastCr = word + ONES * (0x80 - '\r' - 1);   // high bit set for b > 0x0d
+        long whitespace = (fromTab & ~pastCr & ~equal(word, 0x0B)) & HIGH;
+        return Long.bitCount(below & ~whitespace & HIGH) + Long.bitCount(equal(word, 0x7F));
+    }
+    
+    /**
+     * High bit set in each byte of an ASCII word equal to c: 0x80 - (b ^ c) keeps it only when b == c
+     */
+    private static long equal(long word, int c) {
+        return (HIGH - (word ^ (ONES * c))) & HIGH;
+    }
+    
+    /**
+     * Validate one byte against the UTF-8 grammar (RFC 3629); false if it cannot be text
+     */
+    private boolean scanByte(int b) {
+        if (pending > 0) {
+            if (b < lower || b > upper) {
+                return false;
+            }
+            pending--;
+            lower = 0x80;
+            upper = 0xBF;
+            return true;
+        }
+        
+        if (b < 0x80) {
+            controls += isControl(b) ? 1 : 0;
+            return true;
+        }
+        if (CONTINUATIONS[b] == 0) {
+            return false;
+        }
+        pending = CONTINUATIONS[b];
+        lower = SECOND_LOWER[b];
+        upper = SECOND_UPPER[b];
+        return true;
+    }
+    
+    /**
+     * UTF-16 a byte at a time; rare enough not to need a word path
+     */
+    private void scanUtf16(ByteBuffer chunk, int pos, int limit) {
+        for (int i = pos; i < limit && !binary; i++) {
+            int b = chunk.get(i) & 0xFF;
+            if (oddByte < 0) {
+                oddByte = b;
+                continue;
+            }
+            int unit = utf16 == ByteOrder.LITTLE_ENDIAN ? oddByte | b << 8 : oddByte << 8 | b;
+            oddByte = -1;
+            binary = !scanUnit(unit);
+        }
+    }
+    
+    /**
+     * Validate one UTF-16 unit: surrogates must pair up, and C0/C1 controls are counted
+     */
+    private boolean scanUnit(int unit) {
+        boolean low = unit >= 0xDC00 && unit <= 0xDFFF;
+        if (highSurrogate) {
+            highSurrogate = false;
+            return low;
+        }
+        if (unit >= 0xD800 && unit <= 0xDBFF) {
+            highSurrogate = true;
+            return true;
+        }
+        if (low || unit == 0xFFFE || unit == 0xFFFF) {
+            return false;
+        }
+        if (unit < 0xA0 && (unit >= 0x80 || isControl(unit))) {
+            controls++;
+        }
+        return true;
+    }
+    
+    /**
+     * Opens with an object or array, closes with the matching bracket
+     */
+    private boolean looksLikeJson() {
+        int first = skipBlank(startOfContent());
+        if (first >= sampleLength) {
+            return false;
+        }
+        if (sample[first] == '[') {
+            return lastSignificant == ']';
+        }
+        if (sample[first] == '{') {
+            int next = skipBlank(first + 1);
+            return lastSignificant == '}'
+                && (next >= sampleLength || sample[next] == '"' || sample[next] == '}');
+        }
+        return false;
+    }
+    
+    /**
+     * At least two sampled lines, each with the same non-zero number of
+     * commas, semicolons or tabs outside quotes
+     */
+    private boolean looksLikeCsv() {
+        for (byte delimiter : new byte[]{',', ';', '\t'}) {
+            int lines = 0;
+            int expected = -1;
+            int count = 0;
+            boolean quoted = false;
+            boolean consistent = true;
+            
+            for (int i = startOfContent(); i < sampleLength && lines < MAX_CSV_LINES && consistent; i++) {
+                byte b = sample[i];
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == delimiter && !quoted) {
+                    count++;
+                } else if (b == '\n' && !quoted) {
+                    if (count == 0 || (expected >= 0 && count != expected)) {
+                        consistent = false;
+                    }
+                    expected = count;
+                    count = 0;
+                    lines++;
+                }
+            }
+            // A last line without a newline only counts when the whole upload was sampled
+            if (consistent && count > 0 && total <= STRUCTURE_SAMPLE && lines < MAX_CSV_LINES) {
+                consistent = count == expected || expected < 0;
+                lines++;
+            }
+            if (consistent && lines >= MIN_CSV_LINES) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private int startOfContent() {
+        boolean utf8Bom = sampleLength >= 3 && sample[0] == (byte) 0xEF
+            && sample[1] == (byte) 0xBB && sample[2] == (byte) 0xBF;
+        return utf8Bom ? 3 : 0;
+    }
+    
+    private int skipBlank(int i) {
+        while (i < sampleLength && isWhitespace(sample[i] & 0xFF)) {
+            i++;
+        }
+        return i;
+    }
+    
+    private static boolean isControl(int b) {
+        return (b < 0x20 && !isWhitespace(b)) || b == 0x7F;
+    }
+    
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+}
@@ -0,0 +1,328 @@
+package com.company.ingest.mime;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Identifies ZIP-based formats from the local file headers as the archive streams past
+ *
+ * Only headers and entry names are parsed; entry data is skipped by its
+ * declared size, so the archive is never buffered. Entries whose size is
+ * only given in a trailing data descriptor are skipped by scanning for the
+ * next header signature. The one entry read is an ODF/EPUB {@code mimetype},
+ * which the formats store uncompressed as the first entry.
+ *
+ * Entry names are kept up to a byte budget; the markers the formats are
+ * told apart by are tracked for every entry regardless.
+ */
+public class ZipInspector {
+    
+    public static final String ZIP = "application/zip";
+    public static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    public static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    public static final String PPTX = "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+    public static final String JAR = "application/java-archive";
+    public static final String EPUB = "application/epub+zip";
+    
+    private static final String OPENDOCUMENT_PREFIX = "application/vnd.oasis.opendocument.";
+    
+    /** Default budget for recorded entry names, in bytes */
+    public static final int DEFAULT_NAME_BUDGET = 16 * 1024;
+    
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    
+    private static final int LOCAL_HEADER_FIELDS = 26;
+    private static final int MAX_MIMETYPE_LENGTH = 256;
+    private static final long UNKNOWN_SIZE = 0xFFFFFFFFL;
+    
+    /**
+     * MIME types header detection may give a ZIP before its entries are seen
+     */
+    private static final Set<String> PROVISIONAL = Set.of(ZIP, DOCX);
+    
+    private enum State { SIGNATURE, FIELDS, NAME, MIMETYPE, SKIP, SCAN, DONE, FAILED }
+    
+    private final int nameBudget;
+    private final List<String> names = new ArrayList<>();
+    private int nameBytes;
+    private boolean namesTruncated;
+    
+    private State state = State.SIGNATURE;
+    private byte[] field = new byte[4];
+    private int fieldLength = 4;
+    private int filled;
+    private long skip;
+    private int window;
+    private int entries;
+    
+    private int flags;
+    private int method;
+    private long compressedSize;
+    private int nameLength;
+    
+    private boolean contentTypes;
+    private boolean word;
+    private boolean spreadsheet;
+    private boolean presentation;
+    private boolean manifest;
+    private String mimetype;
+    
+    public ZipInspector() {
+        this(DEFAULT_NAME_BUDGET);
+    }
+    
+    /**
+     * @param nameBudget bytes of entry names to record; further names only update the markers
+     */
+    public ZipInspector(int nameBudget) {
+        this.nameBudget = nameBudget;
+    }
+    
+    /**
+     * Whether a {@code mimetype} entry names a format that stores one: ODF or EPUB
+     *
+     * Anything else is ignored, so an archive cannot claim an arbitrary
+     * (say, allowlisted) type by its first entry.
+     */
+    private static boolean isContainerMime(String mime) {
+        return mime.startsWith(OPENDOCUMENT_PREFIX) && mime.length() > OPENDOCUMENT_PREFIX.length()
+            || mime.equals(EPUB);
+    }
+    
+    /**
+     * Whether a header-based detection should wait for the entries before it is trusted
+     */
+    public static boolean isProvisional(String headerMime) {
+        return PROVISIONAL.contains(headerMime);
+    }
+    
+    /**
+     * Consume the bytes between the buffer's position and limit
+     */
+    public void update(ByteBuffer chunk) {
+        while (chunk.hasRemaining() && state != State.DONE && state != State.FAILED) {
+            switch (state) {
+                case SKIP -> {
+                    int n = (int) Math.min(skip, chunk.remaining());
+                    chunk.position(chunk.position() + n);
+                    skip -= n;
+                    if (skip == 0) {
+                        afterData();
+                    }
+                }
+                case SCAN -> scan(chunk);
+                default -> {
+                    int n = Math.min(fieldLength - filled, chunk.remaining());
+                    chunk.get(field, filled, n);
+                    filled += n;
+                    if (filled == fieldLength) {
+                        fieldComplete();
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Format identified from the entries seen, or null if the stream was not
+     * a readable ZIP or ended before anything conclusive
+     */
+    public String mimeType() {
+        if (entries == 0) {
+            return null;
+        }
+        if (mimetype != null) {
+            return mimetype;
+        }
+        if (contentTypes && word) {
+            return DOCX;
+        }
+        if (contentTypes && spreadsheet) {
+            return XLSX;
+        }
+        if (contentTypes && presentation) {
+            return PPTX;
+        }
+        if (manifest) {
+            return JAR;
+        }
+        // Without a marker only a fully walked archive is known to be a plain ZIP
+        return state == State.DONE ? ZIP : null;
+    }
+    
+    /**
+     * Whether later bytes can no longer change {@link #mimeType()}: the walk
+     * has ended, or the entries seen already decide the type
+     *
+     * A {@code mimetype} entry is only read first, and DOCX markers win over
+     * the other Office formats, so either ends the search early.
+     */
+    public boolean isSettled() {
+        return state == State.DONE || state == State.FAILED 
+            || mimetype != null || contentTypes && word;
+    }
+    
+    /**
+     * Entry names in archive order, up to the name budget
+     */
+    public List<String> entryNames() {
+        return Collections.unmodifiableList(names);
+    }
+    
+    /**
+     * Whether names were dropped because the budget ran out
+     */
+    public boolean isTruncated() {
+        return namesTruncated;
+    }
+    
+    private void fieldComplete() {
+        ByteBuffer in = ByteBuffer.wrap(field, 0, fieldLength).order(ByteOrder.LITTLE_ENDIAN);
+        switch (state) {
+            case SIGNATURE -> signature(in.getInt());
+            case FIELDS -> {
+                flags = Short.toUnsignedInt(in.getShort(2));
+                method = Short.toUnsignedInt(in.getShort(4));
+                compressedSize = Integer.toUnsignedLong(in.getInt(14));
+                nameLength = Short.toUnsignedInt(in.getShort(22));
+                int extraLength = Short.toUnsignedInt(in.getShort(24));
+                expect(State.NAME, nameLength + extraLength);
+            }
+            case NAME -> entry(in);
+            case MIMETYPE -> {
+                String content = new String(field, 0, fieldLength, StandardCharsets.US_ASCII).strip();
+                if (entries == 1 && isContainerMime(content)) {
+                    mimetype = content;
+                }
+                afterData();
+            }
+            default -> throw new IllegalStateException(state.name());
+        }
+    }
+    
+    private void signature(int signature) {
+        if (signature == LOCAL_HEADER) {
+            expect(State.FIELDS, LOCAL_HEADER_FIELDS);
+        } else if (entries > 0 && (signature == CENTRAL_HEADER || signature == END_OF_CENTRAL_DIRECTORY)) {
+            state = State.DONE;
+        } else {
+            state = State.FAILED;
+        }
+    }
+    
+    private void entry(ByteBuffer in) {
+        entries++;
+        boolean utf8 = (flags & 0x800) != 0;
+        String name = new String(field, 0, nameLength, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+        record(name);
+        
+        if (compressedSize == UNKNOWN_SIZE) {
+            compressedSize = zip64CompressedSize(in);
+        }
+        boolean sizeInDescriptor = (flags & 0x08) != 0;
+        
+        if (sizeInDescriptor && compressedSize == 0) {
+            startScan();
+        } else if (compressedSize < 0) {
+            state = State.FAILED;
+        } else if (name.equals("mimetype") && method == 0 && compressedSize <= MAX_MIMETYPE_LENGTH) {
+            expect(State.MIMETYPE, (int) compressedSize);
+        } else {
+            skip = compressedSize;
+            state = State.SKIP;
+            if (skip == 0) {
+                afterData();
+            }
+        }
+    }
+    
+    private void record(String name) {
+        if (name.equals("[Content_Types].xml")) {
+            contentTypes = true;
+        } else if (name.startsWith("word/")) {
+            word = true;
+        } else if (name.startsWith("xl/")) {
+            spreadsheet = true;
+        } else if (name.startsWith("ppt/")) {
+            presentation = true;
+        } else if (name.equals("META-INF/MANIFEST.MF")) {
+            manifest = true;
+        }
+        
+        if (!namesTruncated && nameBytes + name.length() <= nameBudget) {
+            names.add(name);
+            nameBytes += name.length();
+        } else {
+            namesTruncated = true;
+        }
+    }
+    
+    /**
+     * Compressed size from the ZIP64 extended information extra field, or -1
+     */
+    private long zip64CompressedSize(ByteBuffer in) {
+        int position = nameLength;
+        while (position + 4 <= fieldLength) {
+            int id = Short.toUnsignedInt(in.getShort(position));
+            int size = Short.toUnsignedInt(in.getShort(position + 2));
+            // Uncompressed size comes first, then compressed; both are present in local headers
+            if (id == 0x0001 && size >= 16 && position + 4 + 16 <= fieldLength) {
+                return in.getLong(position + 4 + 8);
+            }
+            position += 4 + size;
+        }
+        return -1;
+    }
+    
+    /**
+     * Entry data consumed: a data descriptor may follow, otherwise the next signature
+     */
+    private void afterData() {
+        if ((flags & 0x08) != 0) {
+            startScan();
+        } else {
+            expect(State.SIGNATURE, 4);
+        }
+    }
+    
+    private void startScan() {
+        state = State.SCAN;
+        window = 0;
+    }
+    
+    /**
+     * Search for the next header signature, skipping unsized data and data descriptors
+     */
+    private void scan(ByteBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            window = (window >>> 8) | (chunk.get() << 24);
+            if (window == LOCAL_HEADER) {
+                expect(State.FIELDS, LOCAL_HEADER_FIELDS);
+                return;
+            }
+            if (window == CENTRAL_HEADER || window == END_OF_CENTRAL_DIRECTORY) {
+                state = State.DONE;
+                return;
+            }
+        }
+    }
+    
+    private void expect(State next, int length) {
+        if (field.length < length) {
+            field = new byte[length];
+        }
+        state = next;
+        fieldLength = length;
+        filled = 0;
+        if (length == 0) {
+            fieldComplete();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.company.ingest.model;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Names of the digests an ingest can compute
+ *
+ * Any {@link MessageDigest} algorithm of the running JVM is supported, plus
+ * the CRC checksums from java.util.zip. Names are matched case-insensitively
+ * and kept upper-case, as the JDK spells them.
+ */
+public final class DigestAlgorithms {
+    public static final String SHA_256 = "SHA-256";
+    public static final String SHA_1 = "SHA-1";
+    public static final String MD5 = "MD5";
+    public static final String CRC32C = "CRC32C";
+    public static final String CRC32 = "CRC32";
+    
+    private DigestAlgorithms() {
+    }
+    
+    /**
+     * The name as used in configs and results, e.g. "sha-1" becomes "SHA-1"
+     */
+    public static String canonical(String algorithm) {
+        return algorithm.trim().toUpperCase(Locale.ROOT);
+    }
+    
+    /**
+     * Whether a checksum from java.util.zip rather than a MessageDigest computes this
+     */
+    public static boolean isChecksum(String algorithm) {
+        String name = canonical(algorithm);
+        return name.equals(CRC32C) || name.equals(CRC32);
+    }
+    
+    public static boolean isSupported(String algorithm) {
+        if (isChecksum(algorithm)) {
+            return true;
+        }
+        try {
+            MessageDigest.getInstance(canonical(algorithm));
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+}
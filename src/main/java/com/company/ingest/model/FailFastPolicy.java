@@ -0,0 +1,25 @@
+package com.company.ingest.model;
+
+/**
+ * What to do with the rest of an upload once it is known to be rejected
+ * (too large, over its declared length, or a MIME type that is not accepted)
+ */
+public enum FailFastPolicy {
+    
+    /**
+     * Stop reading the source. The result reports the bytes observed so far,
+     * is marked incomplete and carries no SHA-256.
+     */
+    ABORT,
+    
+    /**
+     * Keep reading to count and hash the whole upload, but discard the bytes
+     * instead of spooling them. The sink receives no data.
+     */
+    DRAIN,
+    
+    /**
+     * Spool everything and replay it to the sink as for an accepted upload
+     */
+    SPOOL
+}
@@ -1,17 +1,55 @@
 package com.company.ingest.model;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * Configuration for the ingest process
  */
 public class IngestConfig {
+    
+    /** Spool files at least this large are replayed through memory mappings */
+    public static final long DEFAULT_REPLAY_MAP_THRESHOLD = 4L * 1024 * 1024;
+    
+    /** Uploads up to this size are spooled in memory instead of a temp file */
+    public static final long DEFAULT_SPOOL_MEMORY_THRESHOLD = 256L * 1024;
+    
+    /** Smallest Merkle leaf; below this the per-leaf task overhead outweighs the hashing */
+    public static final int MIN_TREE_LEAF_SIZE = 4 * 1024;
+    
     private final long maxContentLength;
     private final Set<String> acceptedMimes;
+    private final long replayMapThreshold;
+    private final int chunkSize;
+    private final boolean directBuffers;
+    private final long spoolMemoryThreshold;
+    private final FailFastPolicy failFastPolicy;
+    private final boolean pipelined;
+    private final int pipelineDepth;
+    private final Set<String> digests;
+    private final int treeLeafSize;
 
     public IngestConfig(long maxContentLength, Set<String> acceptedMimes) {
-        this.maxContentLength = maxContentLength;
-        this.acceptedMimes = acceptedMimes;
+        this(builder(maxContentLength, acceptedMimes));
+    }
+    
+    private IngestConfig(Builder builder) {
+        this.maxContentLength = builder.maxContentLength;
+        this.acceptedMimes = builder.acceptedMimes;
+        this.replayMapThreshold = builder.replayMapThreshold;
+        this.chunkSize = builder.chunkSize;
+        this.directBuffers = builder.directBuffers;
+        this.spoolMemoryThreshold = builder.spoolMemoryThreshold;
+        this.failFastPolicy = builder.failFastPolicy;
+        this.pipelined = builder.pipelined;
+        this.pipelineDepth = builder.pipelineDepth;
+        this.digests = Collections.unmodifiableSet(new LinkedHashSet<>(builder.digests));
+        this.treeLeafSize = builder.treeLeafSize;
+    }
+    
+    public static Builder builder(long maxContentLength, Set<String> acceptedMimes) {
+        return new Builder(maxContentLength, acceptedMimes);
     }
 
     public long getMaxContentLength() {
@@ -21,4 +59,167 @@ public class IngestConfig {
     public Set<String> getAcceptedMimes() {
         return acceptedMimes;
     }
-}
\ No newline at end of file
+    
+    public long getReplayMapThreshold() {
+        return replayMapThreshold;
+    }
+    
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+    
+    public long getSpoolMemoryThreshold() {
+        return spoolMemoryThreshold;
+    }
+    
+    public FailFastPolicy getFailFastPolicy() {
+        return failFastPolicy;
+    }
+    
+    public boolean isPipelined() {
+        return pipelined;
+    }
+    
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+    
+    /**
+     * Digests computed for every upload, SHA-256 first; see {@link DigestAlgorithms}
+     */
+    public Set<String> getDigests() {
+        return digests;
+    }
+    
+    /**
+     * Leaf size of the Merkle tree hash, or 0 when tree hashing is off
+     */
+    public int getTreeLeafSize() {
+        return treeLeafSize;
+    }
+    
+    /**
+     * Builder for the optional tuning settings; validation settings are required up front
+     */
+    public static class Builder {
+        private final long maxContentLength;
+        private final Set<String> acceptedMimes;
+        private long replayMapThreshold = DEFAULT_REPLAY_MAP_THRESHOLD;
+        private int chunkSize = 8192; // 8KB default
+        private boolean directBuffers = false;
+        private long spoolMemoryThreshold = DEFAULT_SPOOL_MEMORY_THRESHOLD;
+        private FailFastPolicy failFastPolicy = FailFastPolicy.SPOOL;
+        private boolean pipelined = false;
+        private int pipelineDepth = 8;
+        private final Set<String> digests = new LinkedHashSet<>(Set.of(DigestAlgorithms.SHA_256));
+        private int treeLeafSize = 0;
+        
+        private Builder(long maxContentLength, Set<String> acceptedMimes) {
+            this.maxContentLength = maxContentLength;
+            this.acceptedMimes = acceptedMimes;
+        }
+        
+        /**
+         * Spool size from which replay uses memory-mapped reads (Long.MAX_VALUE disables mapping)
+         */
+        public Builder replayMapThreshold(long replayMapThreshold) {
+            this.replayMapThreshold = replayMapThreshold;
+            return this;
+        }
+        
+        /**
+         * Size of the buffer each ingest reads the source into
+         */
+        public Builder chunkSize(int chunkSize) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+        
+        /**
+         * Run reads, hashing and spooling on direct (off-heap) buffers
+         */
+        public Builder directBuffers(boolean directBuffers) {
+            this.directBuffers = directBuffers;
+            return this;
+        }
+        
+        /**
+         * Largest upload kept in memory before spilling to a temp file (0 always uses disk)
+         */
+        public Builder spoolMemoryThreshold(long spoolMemoryThreshold) {
+            this.spoolMemoryThreshold = spoolMemoryThreshold;
+            return this;
+        }
+        
+        /**
+         * How to handle the remainder of an upload that is already rejected
+         */
+        public Builder failFastPolicy(FailFastPolicy failFastPolicy) {
+            this.failFastPolicy = failFastPolicy;
+            return this;
+        }
+        
+        /**
+         * Hash and spool on separate threads, overlapping with the reads
+         */
+        public Builder pipelined(boolean pipelined) {
+            this.pipelined = pipelined;
+            return this;
+        }
+        
+        /**
+         * Number of chunk buffers in flight between the reader and the pipeline stages
+         */
+        public Builder pipelineDepth(int pipelineDepth) {
+            if (pipelineDepth < 2) {
+                throw new IllegalArgumentException("Pipeline depth must be at least 2: " + pipelineDepth);
+            }
+            this.pipelineDepth = pipelineDepth;
+            return this;
+        }
+        
+        /**
+         * Extra digests to compute in the same pass (SHA-256 is always computed)
+         *
+         * Each digest is a pipeline stage of its own, so with
+         * {@link #pipelined(boolean)} a slow digest runs on its own lane and
+         * does not hold back the others.
+         */
+        public Builder digests(String... algorithms) {
+            for (String algorithm : algorithms) {
+                if (!DigestAlgorithms.isSupported(algorithm)) {
+                    throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm);
+                }
+                digests.add(DigestAlgorithms.canonical(algorithm));
+            }
+            return this;
+        }
+        
+        /**
+         * Also compute a Merkle tree hash over leaves of this size (0 turns it off)
+         *
+         * Leaves are hashed in parallel on the common fork/join pool, so the
+         * tree hash scales with cores where plain SHA-256 is bound to one.
+         * The leaf hashes are kept in the result for later range checks.
+         */
+        public Builder treeHash(int leafSize) {
+            if (leafSize < 0 || (leafSize > 0 && leafSize < MIN_TREE_LEAF_SIZE)) {
+                throw new IllegalArgumentException(String.format(
+                    "Tree leaf size must be 0 or at least %d: %d", MIN_TREE_LEAF_SIZE, leafSize));
+            }
+            this.treeLeafSize = leafSize;
+            return this;
+        }
+        
+        public IngestConfig build() {
+            return new IngestConfig(this);
+        }
+    }
+}
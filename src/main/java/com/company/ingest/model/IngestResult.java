@@ -1,6 +1,8 @@
 package com.company.ingest.model;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Result of validation and processing
@@ -11,14 +13,42 @@ public class IngestResult {
     private final String sha256;
     private final boolean ok;
     private final List<String> errors;
+    private final boolean complete;
+    private final Map<String, String> digests;
+    private final TreeHash treeHash;
 
     public IngestResult(String detectedMime, long size, String sha256, 
                        boolean ok, List<String> errors) {
+        this(detectedMime, size, sha256, ok, errors, true);
+    }
+    
+    public IngestResult(String detectedMime, long size, String sha256, 
+                       boolean ok, List<String> errors, boolean complete) {
+        this(detectedMime, size, sha256, ok, errors, complete,
+             sha256 == null ? Map.of() : Map.of(DigestAlgorithms.SHA_256, sha256));
+    }
+    
+    /**
+     * @param digests hex digests keyed by {@link DigestAlgorithms#canonical canonical} algorithm name
+     */
+    public IngestResult(String detectedMime, long size, String sha256,
+                       boolean ok, List<String> errors, boolean complete, Map<String, String> digests) {
+        this(detectedMime, size, sha256, ok, errors, complete, digests, null);
+    }
+    
+    /**
+     * @param treeHash Merkle tree hash, or null when tree hashing was off or the upload incomplete
+     */
+    public IngestResult(String detectedMime, long size, String sha256, boolean ok, List<String> errors, 
+                       boolean complete, Map<String, String> digests, TreeHash treeHash) {
         this.detectedMime = detectedMime;
         this.size = size;
         this.sha256 = sha256;
         this.ok = ok;
         this.errors = errors;
+        this.complete = complete;
+        this.digests = Collections.unmodifiableMap(digests);
+        this.treeHash = treeHash;
     }
 
     public String getDetectedMime() {
@@ -29,6 +59,9 @@ public class IngestResult {
         return size;
     }
 
+    /**
+     * SHA-256 hex digest, or null if the upload was not read to the end
+     */
     public String getSha256() {
         return sha256;
     }
@@ -40,4 +73,34 @@ public class IngestResult {
     public List<String> getErrors() {
         return errors;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Whether the whole upload was read; false when a fail-fast abort stopped early,
+     * in which case size counts only the bytes observed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * Hex digests computed in the pass, keyed by algorithm; empty if the upload was not read to the end
+     */
+    public Map<String, String> getDigests() {
+        return digests;
+    }
+    
+    /**
+     * Hex digest for one algorithm, matched case-insensitively; null if it was not computed
+     */
+    public String getDigest(String algorithm) {
+        return digests.get(DigestAlgorithms.canonical(algorithm));
+    }
+    
+    /**
+     * Merkle tree hash with its leaf hashes; null unless the config enabled tree hashing
+     * and the upload was read to the end
+     */
+    public TreeHash getTreeHash() {
+        return treeHash;
+    }
+}
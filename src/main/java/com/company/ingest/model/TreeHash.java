@@ -0,0 +1,43 @@
+package com.company.ingest.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merkle tree hash of an upload, with the leaf hashes it was built from
+ *
+ * The tree follows RFC 6962: a leaf is SHA-256(0x00 || block), an inner node
+ * SHA-256(0x01 || left || right), and an n-leaf tree splits at the largest
+ * power of two below n. Leaf i covers bytes [i * leafSize, (i + 1) * leafSize);
+ * only the last leaf may be shorter. An empty upload has no leaves and the
+ * root SHA-256 of nothing.
+ */
+public class TreeHash {
+    private final int leafSize;
+    private final String root;
+    private final List<String> leaves;
+    
+    public TreeHash(int leafSize, String root, List<String> leaves) {
+        this.leafSize = leafSize;
+        this.root = root;
+        this.leaves = Collections.unmodifiableList(leaves);
+    }
+    
+    public int getLeafSize() {
+        return leafSize;
+    }
+    
+    /**
+     * Hex Merkle root
+     */
+    public String getRoot() {
+        return root;
+    }
+    
+    /**
+     * Hex leaf hashes, in upload order
+     */
+    public List<String> getLeaves() {
+        return leaves;
+    }
+}
@@ -1,6 +1,10 @@
 package com.company.ingest.model;
 
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 /**
  * Metadata provided by the uploader for a document
@@ -9,11 +13,26 @@ public class UploadMeta {
     private final String filename;
     private final String claimedMime;
     private final Optional<Long> contentLength;
+    private final Map<String, String> declaredDigests;
 
     public UploadMeta(String filename, String claimedMime, Optional<Long> contentLength) {
+        this(filename, claimedMime, contentLength, Map.of());
+    }
+    
+    /**
+     * @param declaredDigests hex digests the client claims for the content, keyed by
+     *                        algorithm name as in {@link java.security.MessageDigest} (e.g. "SHA-256")
+     */
+    public UploadMeta(String filename, String claimedMime, Optional<Long> contentLength,
+                      Map<String, String> declaredDigests) {
         this.filename = filename;
         this.claimedMime = claimedMime;
         this.contentLength = contentLength;
+        
+        // Algorithm names match case-insensitively; hex is kept lowercase like computed digests
+        Map<String, String> digests = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        declaredDigests.forEach((algorithm, hex) -> digests.put(algorithm, hex.toLowerCase(Locale.ROOT)));
+        this.declaredDigests = Collections.unmodifiableMap(digests);
     }
 
     public String getFilename() {
@@ -27,4 +46,15 @@ public class UploadMeta {
     public Optional<Long> getContentLength() {
         return contentLength;
     }
+    
+    /**
+     * Client-declared hex digests by algorithm name; lookups ignore case
+     */
+    public Map<String, String> getDeclaredDigests() {
+        return declaredDigests;
+    }
+    
+    public Optional<String> getDeclaredSha256() {
+        return Optional.ofNullable(declaredDigests.get(DigestAlgorithms.SHA_256));
+    }
 }
\ No newline at end of file
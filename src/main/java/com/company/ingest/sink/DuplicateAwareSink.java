@@ -0,0 +1,97 @@
+package com.company.ingest.sink;
+
+import com.company.ingest.dedup.DedupEntry;
+import com.company.ingest.dedup.DedupIndex;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Decorator that skips persisting content the index already knows
+ *
+ * An accepted upload whose SHA-256 is in the index reaches the wrapped sink
+ * as {@link IngestSink#alreadyStored}; its replay is closed unread. New
+ * content is persisted as usual and then recorded. Rejected uploads pass
+ * straight through.
+ *
+ * A streaming sink has already received the bytes by the time the digest
+ * is known, so a duplicate is aborted rather than committed, followed by
+ * the same notification.
+ */
+public class DuplicateAwareSink implements IngestSink {
+    private final IngestSink delegate;
+    private final DedupIndex index;
+    
+    public DuplicateAwareSink(IngestSink delegate, DedupIndex index) {
+        this.delegate = delegate;
+        this.index = index;
+    }
+    
+    @Override
+    public void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException {
+        if (!result.isOk()) {
+            delegate.persist(meta, result, data);
+            return;
+        }
+        
+        if (isStored(result)) {
+            delegate.alreadyStored(meta, result);
+            return;
+        }
+        
+        delegate.persist(meta, result, data);
+        record(result);
+    }
+    
+    @Override
+    public void alreadyStored(UploadMeta meta, IngestResult result) throws IOException {
+        delegate.alreadyStored(meta, result);
+    }
+    
+    @Override
+    public boolean supportsStreaming() {
+        return delegate.supportsStreaming();
+    }
+    
+    @Override
+    public Upload begin(UploadMeta meta) throws IOException {
+        Upload upload = delegate.begin(meta);
+        
+        return new Upload() {
+            @Override
+            public void write(ByteBuffer chunk) throws IOException {
+                upload.write(chunk);
+            }
+            
+            @Override
+            public void commit(IngestResult result) throws IOException {
+                if (isStored(result)) {
+                    upload.abort(result);
+                    delegate.alreadyStored(meta, result);
+                    return;
+                }
+                
+                upload.commit(result);
+                record(result);
+            }
+            
+            @Override
+            public void abort(IngestResult result) throws IOException {
+                upload.abort(result);
+            }
+        };
+    }
+    
+    private boolean isStored(IngestResult result) throws IOException {
+        Optional<DedupEntry> entry = index.lookup(result.getSha256());
+        return entry.isPresent() && entry.get().getSize() == result.getSize();
+    }
+    
+    private void record(IngestResult result) throws IOException {
+        index.record(new DedupEntry(result.getSha256(), result.getSize(), result.getDetectedMime()));
+    }
+}
@@ -0,0 +1,138 @@
+package com.company.ingest.sink;
+
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sink that stores accepted uploads in a directory, named by their SHA-256.
+ *
+ * By default uploads are streamed straight into a partial file in the
+ * directory while they are hashed, so no spool is written for them. In
+ * replay mode bytes are moved with {@link ByteSource#transferTo} instead, so
+ * a spool-file replay is copied by the kernel; other sources go through the
+ * chunked fallback. Rejected uploads are not stored.
+ */
+public class FileSystemIngestSink implements IngestSink {
+    private final Path directory;
+    private final boolean streaming;
+    private final AtomicLong zeroCopyTransfers = new AtomicLong();
+    
+    public FileSystemIngestSink(Path directory) throws IOException {
+        this(directory, true);
+    }
+    
+    /**
+     * @param streaming false to receive uploads only after validation, replayed from the spool
+     */
+    public FileSystemIngestSink(Path directory, boolean streaming) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.streaming = streaming;
+    }
+    
+    @Override
+    public boolean supportsStreaming() {
+        return streaming;
+    }
+    
+    @Override
+    public Upload begin(UploadMeta meta) throws IOException {
+        return new PartialFileUpload(Files.createTempFile(directory, "partial-", ".tmp"));
+    }
+    
+    @Override
+    public void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException {
+        if (!result.isOk()) {
+            return;
+        }
+        
+        Path target = pathFor(result.getSha256());
+        if (Files.exists(target)) {
+            return; // Same content already stored
+        }
+        
+        // Write to a temp name first so readers never see a partial file
+        Path partial = Files.createTempFile(directory, "partial-", ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                if (data.supportsTransferTo()) {
+                    zeroCopyTransfers.incrementAndGet();
+                }
+                data.transferTo(out);
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+    
+    /**
+     * Streamed upload written to a partial file, renamed to its digest on commit
+     */
+    private class PartialFileUpload implements Upload {
+        private final Path partial;
+        private final FileChannel out;
+        
+        PartialFileUpload(Path partial) throws IOException {
+            this.partial = partial;
+            try {
+                this.out = FileChannel.open(partial, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                Files.deleteIfExists(partial);
+                throw e;
+            }
+        }
+        
+        @Override
+        public void write(ByteBuffer chunk) throws IOException {
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
+            }
+        }
+        
+        @Override
+        public void commit(IngestResult result) throws IOException {
+            try {
+                out.close();
+                Path target = pathFor(result.getSha256());
+                if (!Files.exists(target)) {
+                    Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        
+        @Override
+        public void abort(IngestResult result) throws IOException {
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+    
+    /**
+     * Location of stored content with the given SHA-256 hex digest
+     */
+    public Path pathFor(String sha256) {
+        return directory.resolve(sha256);
+    }
+    
+    /**
+     * Number of uploads stored through a zero-copy transfer
+     */
+    public long getZeroCopyTransfers() {
+        return zeroCopyTransfers.get();
+    }
+}
@@ -5,13 +5,69 @@ import com.company.ingest.model.IngestResult;
 import com.company.ingest.model.UploadMeta;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Receives validated uploads for downstream processing
+ *
+ * By default the sink is handed the complete upload after validation, replayed
+ * from the spool. A sink that returns true from {@link #supportsStreaming()}
+ * is instead sent the bytes while they are read and hashed, and learns the
+ * verdict afterwards; no spool is kept for it.
  */
 public interface IngestSink {
     /**
      * Persist the upload with its validation result
      */
     void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException;
-}
\ No newline at end of file
+    
+    /**
+     * An accepted upload whose content is already stored; sent instead of the bytes
+     *
+     * Only a {@link DuplicateAwareSink} is sent this, and only it passes it on
+     * to the sink it wraps, so sinks used on their own always get the bytes.
+     */
+    default void alreadyStored(UploadMeta meta, IngestResult result) throws IOException {
+    }
+    
+    /**
+     * Whether {@link #begin} may be used instead of {@link #persist}
+     */
+    default boolean supportsStreaming() {
+        return false;
+    }
+    
+    /**
+     * Start receiving an upload whose verdict is not known yet
+     */
+    default Upload begin(UploadMeta meta) throws IOException {
+        throw new UnsupportedOperationException("Sink does not support streaming");
+    }
+    
+    /**
+     * One upload being streamed to the sink
+     *
+     * Calls come from one thread at a time, though not necessarily the same
+     * one. Exactly one of {@link #commit} or {@link #abort} ends the upload;
+     * if that call throws, the sink is responsible for its own cleanup.
+     */
+    interface Upload {
+        /**
+         * Take the bytes between the chunk's position and limit
+         */
+        void write(ByteBuffer chunk) throws IOException;
+        
+        /**
+         * All bytes were written and the upload passed validation
+         */
+        void commit(IngestResult result) throws IOException;
+        
+        /**
+         * Drop everything written so far
+         *
+         * @param result the failed verdict, or null if ingest failed before one was reached;
+         *               an accepted verdict means the content turned out to be stored already
+         */
+        void abort(IngestResult result) throws IOException;
+    }
+}
@@ -61,9 +61,10 @@ public class ManualTestRunner {
             this.lastMeta = meta;
             this.lastResult = result;
             this.bytesConsumed = 0;
-            byte[] chunk;
-            while ((chunk = data.nextChunk()).length > 0) {
-                bytesConsumed += chunk.length;
+            byte[] buffer = new byte[ByteSource.DEFAULT_CHUNK_SIZE];
+            int bytesRead;
+            while ((bytesRead = data.read(buffer, 0, buffer.length)) != -1) {
+                bytesConsumed += bytesRead;
             }
             try {
                 data.close();
@@ -0,0 +1,133 @@
+package com.company.ingest.core;
+
+import com.company.ingest.fixtures.TestDataFactory;
+import com.company.ingest.io.BufferPool;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.io.MemoryByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.IngestSink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for batch ingest
+ */
+class BatchIngestorTest {
+    
+    private final IngestConfig config = new IngestConfig(1_000_000, Set.of("application/pdf"));
+    
+    @AfterEach
+    void checkForLeaks() {
+        assertEquals(0, BufferPool.shared().getOutstandingLeases(), BufferPool.shared().describeLeaks());
+    }
+    
+    @Test
+    void testOutcomesFollowItemOrderAndFailuresAreIsolated() throws Exception {
+        byte[] pdf = TestDataFactory.createMockPdf();
+        byte[] png = TestDataFactory.createMockPng();
+        
+        List<BatchIngestor.Item> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            if (i % 10 == 3) {
+                items.add(new BatchIngestor.Item(meta("broken-" + i), () -> {
+                    throw new IOException("cannot open");
+                }));
+            } else if (i % 10 == 7) {
+                items.add(BatchIngestor.Item.of(meta("image-" + i), new MemoryByteSource(png)));
+            } else {
+                items.add(BatchIngestor.Item.of(meta("doc-" + i), new MemoryByteSource(pdf)));
+            }
+        }
+        
+        CountingSink sink = new CountingSink();
+        List<BatchIngestor.Outcome> outcomes = new BatchIngestor(4).ingestAll(items, config, sink);
+        
+        assertEquals(items.size(), outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            BatchIngestor.Outcome outcome = outcomes.get(i);
+            assertSame(items.get(i).getMeta(), outcome.getMeta());
+            
+            if (i % 10 == 3) {
+                assertNull(outcome.getResult());
+                assertEquals("cannot open", outcome.getFailure().getMessage());
+            } else if (i % 10 == 7) {
+                assertNull(outcome.getFailure());
+                assertFalse(outcome.isAccepted(), "PNG is not accepted");
+            } else {
+                assertTrue(outcome.isAccepted());
+            }
+        }
+        assertEquals(24, sink.uploads.get());
+    }
+    
+    @Test
+    void testOpenSourcesNeverExceedParallelism() throws Exception {
+        byte[] pdf = TestDataFactory.createMockPdf();
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        
+        List<BatchIngestor.Item> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(new BatchIngestor.Item(meta("doc-" + i), () -> {
+                maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+                return new MemoryByteSource(pdf) {
+                    @Override
+                    public void close() throws IOException {
+                        open.decrementAndGet();
+                        super.close();
+                    }
+                };
+            }));
+        }
+        
+        CountingSink sink = new CountingSink();
+        List<BatchIngestor.Outcome> outcomes = new BatchIngestor(3).ingestAll(items, config, sink);
+        
+        assertTrue(outcomes.stream().allMatch(BatchIngestor.Outcome::isAccepted));
+        assertEquals(0, open.get(), "Every source should be closed");
+        assertTrue(maxOpen.get() <= 3, "Open sources peaked at " + maxOpen.get());
+        assertEquals(200L * pdf.length, sink.bytes.get());
+    }
+    
+    @Test
+    void testEmptyBatch() throws Exception {
+        assertTrue(new BatchIngestor().ingestAll(List.of(), config, new CountingSink()).isEmpty());
+    }
+    
+    private static UploadMeta meta(String name) {
+        return new UploadMeta(name, "application/pdf", Optional.empty());
+    }
+    
+    /**
+     * Thread-safe sink counting stored uploads and bytes
+     */
+    private static class CountingSink implements IngestSink {
+        final AtomicInteger uploads = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        
+        @Override
+        public void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException {
+            if (!result.isOk()) {
+                return;
+            }
+            byte[] buffer = new byte[ByteSource.DEFAULT_CHUNK_SIZE];
+            int read;
+            while ((read = data.read(buffer, 0, buffer.length)) != -1) {
+                bytes.addAndGet(read);
+            }
+            uploads.incrementAndGet();
+        }
+    }
+}
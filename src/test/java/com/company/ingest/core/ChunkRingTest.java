@@ -0,0 +1,79 @@
+package com.company.ingest.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the lock-free chunk ring behind the pipelined pass
+ */
+class ChunkRingTest {
+
+    @Test
+    void testEveryConsumerSeesEveryChunkInOrder() throws Exception {
+        ChunkRing ring = new ChunkRing(3, 16, false, 2);
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        
+        Thread a = new Thread(() -> ring.consume(0, chunk -> first.add((int) chunk.get())));
+        Thread b = new Thread(() -> ring.consume(1, new ChunkStage() {
+            @Override
+            public void accept(ByteBuffer chunk) {
+                second.add((int) chunk.get());
+            }
+            
+            @Override
+            public void finish() {
+                finished.set(true);
+            }
+        }));
+        a.start();
+        b.start();
+        
+        for (int i = 0; i < 100; i++) {
+            ByteBuffer slot = ring.claim();
+            slot.put((byte) i).flip();
+            ring.publish(slot);
+        }
+        ring.end();
+        a.join();
+        b.join();
+        ring.release();
+        
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+        assertTrue(finished.get());
+    }
+    
+    @Test
+    void testConsumerFailureSurfacesOnProducer() throws Exception {
+        ChunkRing ring = new ChunkRing(2, 16, false, 1);
+        Thread lane = new Thread(() -> ring.consume(0, chunk -> {
+            throw new IOException("disk full");
+        }));
+        lane.start();
+        
+        IOException error = assertThrows(IOException.class, () -> {
+            while (true) {
+                ByteBuffer slot = ring.claim();
+                slot.put((byte) 1).flip();
+                ring.publish(slot);
+            }
+        });
+        lane.join();
+        ring.release();
+        
+        assertTrue(error.getMessage().contains("disk full"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.company.ingest.core;
+
+import com.company.ingest.fixtures.TestDataFactory;
+import com.company.ingest.io.BufferPool;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.IngestSink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the virtual-thread ingest service
+ */
+class IngestServiceTest {
+    
+    @AfterEach
+    void checkForLeaks() {
+        assertEquals(0, BufferPool.shared().getOutstandingLeases(), BufferPool.shared().describeLeaks());
+    }
+    
+    @Test
+    void testManyIdleUploadsAreInFlightAtOnce() throws Exception {
+        int uploads = 5_000;
+        byte[] pdf = TestDataFactory.createMockPdf();
+        CountDownLatch allStarted = new CountDownLatch(uploads);
+        CountDownLatch release = new CountDownLatch(1);
+        IngestConfig config = new IngestConfig(1_000_000, Set.of("application/pdf"));
+        
+        List<CompletableFuture<IngestResult>> futures = new ArrayList<>();
+        try (IngestService service = new IngestService(4, 4)) {
+            for (int i = 0; i < uploads; i++) {
+                InputStream slowClient = new ByteArrayInputStream(pdf) {
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        allStarted.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.read(b, off, len);
+                    }
+                };
+                futures.add(service.submit(meta(pdf.length), config,
+                    new InputStreamByteSource(slowClient), new CountingSink(null)));
+            }
+            
+            assertTrue(allStarted.await(30, TimeUnit.SECONDS), "Every upload should be reading at once");
+            release.countDown();
+            
+            for (CompletableFuture<IngestResult> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS).isOk());
+            }
+        }
+    }
+    
+    @Test
+    void testDiskSpoolAndSinkLimitsAreHonoured() throws Exception {
+        byte[] pdf = pdfOfSize(200_000);
+        IngestConfig diskSpool = IngestConfig.builder(1_000_000, Set.of("application/pdf"))
+            .spoolMemoryThreshold(0)
+            .build();
+        AtomicInteger maxSpools = new AtomicInteger();
+        AtomicInteger sinkCalls = new AtomicInteger();
+        AtomicInteger maxSinkCalls = new AtomicInteger();
+        
+        List<CompletableFuture<IngestResult>> futures = new ArrayList<>();
+        try (IngestService service = new IngestService(2, 3)) {
+            for (int i = 0; i < 40; i++) {
+                InputStream slowClient = new ByteArrayInputStream(pdf) {
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        maxSpools.accumulateAndGet(service.getActiveDiskSpools(), Math::max);
+                        Thread.yield();
+                        return super.read(b, off, len);
+                    }
+                };
+                CountingSink sink = new CountingSink(() -> {
+                    maxSinkCalls.accumulateAndGet(sinkCalls.incrementAndGet(), Math::max);
+                    Thread.sleep(2);
+                    sinkCalls.decrementAndGet();
+                });
+                futures.add(service.submit(meta(pdf.length), diskSpool,
+                    new InputStreamByteSource(slowClient), sink));
+            }
+            
+            for (CompletableFuture<IngestResult> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS).isOk());
+            }
+            assertEquals(0, service.getActiveDiskSpools());
+            assertEquals(0, service.getActiveSinkCalls());
+        }
+        
+        assertTrue(maxSpools.get() >= 1 && maxSpools.get() <= 2, "Disk spools peaked at " + maxSpools.get());
+        assertTrue(maxSinkCalls.get() <= 3, "Sink calls peaked at " + maxSinkCalls.get());
+    }
+    
+    @Test
+    void testRejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new IngestService(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new IngestService(1, 0));
+    }
+    
+    private static UploadMeta meta(long length) {
+        return new UploadMeta("doc.pdf", "application/pdf", Optional.of(length));
+    }
+    
+    private static byte[] pdfOfSize(int size) {
+        byte[] data = new byte[size];
+        System.arraycopy(TestDataFactory.createMockPdf(), 0, data, 0, 4);
+        return data;
+    }
+    
+    /**
+     * Sink that drains the replay, optionally running a probe first
+     */
+    private static class CountingSink implements IngestSink {
+        private final Probe probe;
+        
+        CountingSink(Probe probe) {
+            this.probe = probe;
+        }
+        
+        @Override
+        public void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException {
+            if (probe != null) {
+                try {
+                    probe.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            byte[] buffer = new byte[ByteSource.DEFAULT_CHUNK_SIZE];
+            while (data.read(buffer, 0, buffer.length) != -1) {
+                // drain
+            }
+        }
+    }
+    
+    private interface Probe {
+        void run() throws InterruptedException;
+    }
+}
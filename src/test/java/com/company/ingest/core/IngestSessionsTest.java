@@ -0,0 +1,281 @@
+package com.company.ingest.core;
+
+import com.company.ingest.fixtures.MockIngestSink;
+import com.company.ingest.io.BufferPool;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for resumable ingest sessions
+ */
+class IngestSessionsTest {
+    
+    @TempDir
+    Path sessionDir;
+    
+    private final Ingestor ingestor = new Ingestor();
+    private final IngestConfig config = new IngestConfig(10_000_000, Set.of("application/pdf"));
+    private final MutableClock clock = new MutableClock();
+    
+    @AfterEach
+    void checkForLeaks() {
+        assertEquals(0, BufferPool.shared().getOutstandingLeases(), BufferPool.shared().describeLeaks());
+    }
+    
+    @Test
+    void testResumedIngestMatchesUninterruptedIngest() throws Exception {
+        byte[] data = pdfOfSize(1_000_000);
+        UploadMeta meta = new UploadMeta("big.pdf", "application/pdf", Optional.of((long) data.length));
+        
+        MockIngestSink direct = new MockIngestSink();
+        ingestor.ingest(meta, config, source(data, 0, data.length), direct);
+        IngestResult expected = direct.getLastResult();
+        
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofHours(1), 64 * 1024, clock);
+        IngestSession session = sessions.create(meta);
+        MockIngestSink sink = new MockIngestSink();
+        
+        // The connection drops part way through, twice
+        assertThrows(IOException.class, () -> ingestor.ingestResumable(
+            session, config, failingAfter(data, 0, 300_000), sink));
+        IngestSession second = sessions.find(session.getId()).orElseThrow();
+        assertEquals(300_000, second.getOffset());
+        
+        assertThrows(IOException.class, () -> ingestor.ingestResumable(
+            second, config, failingAfter(data, 300_000, 450_000), sink));
+        IngestSession third = sessions.find(session.getId()).orElseThrow();
+        assertEquals(750_000, third.getOffset());
+        assertNull(sink.getLastResult(), "Sink should see nothing until the upload is whole");
+        
+        IngestResult result = ingestor.ingestResumable(
+            third, config, source(data, 750_000, data.length), sink);
+        
+        assertEquals(expected.getSha256(), result.getSha256());
+        assertEquals(expected.getSize(), result.getSize());
+        assertEquals(expected.getDetectedMime(), result.getDetectedMime());
+        assertEquals(expected.getErrors(), result.getErrors());
+        assertEquals(data.length, sink.getBytesConsumed());
+        assertFalse(sessions.find(session.getId()).isPresent(), "Finished session should be deleted");
+        assertEquals(0, countSessions());
+    }
+    
+    @Test
+    void testResumedUploadsAreClassifiedLikeUninterruptedOnes() throws Exception {
+        StringBuilder csv = new StringBuilder("id,name\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append(i).append(",row ").append(i).append('\n');
+        }
+        ByteArrayOutputStream xlsx = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(xlsx)) {
+            for (String name : new String[]{"[Content_Types].xml", "_rels/.rels", "xl/workbook.xml"}) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(pdfOfSize(100_000));
+                zip.closeEntry();
+            }
+        }
+        String xlsxMime = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        IngestConfig classifying = new IngestConfig(10_000_000, Set.of("text/csv", xlsxMime));
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofHours(1), 64 * 1024, clock);
+        
+        Map<String, byte[]> uploads = Map.of(
+            "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8), xlsxMime, xlsx.toByteArray());
+        for (Map.Entry<String, byte[]> upload : uploads.entrySet()) {
+            byte[] data = upload.getValue();
+            UploadMeta meta = new UploadMeta("upload", upload.getKey(), Optional.of((long) data.length));
+            MockIngestSink direct = new MockIngestSink();
+            ingestor.ingest(meta, classifying, source(data, 0, data.length), direct);
+            
+            IngestSession session = sessions.create(meta);
+            assertThrows(IOException.class, () -> ingestor.ingestResumable(
+                session, classifying, failingAfter(data, 0, 100_000), new MockIngestSink()));
+            IngestSession resumed = sessions.find(session.getId()).orElseThrow();
+            IngestResult result = ingestor.ingestResumable(
+                resumed, classifying, source(data, 100_000, data.length), new MockIngestSink());
+            
+            assertTrue(result.isOk(), () -> "Errors: " + result.getErrors());
+            assertEquals(upload.getKey(), result.getDetectedMime());
+            assertEquals(direct.getLastResult().getDetectedMime(), result.getDetectedMime());
+            assertEquals(direct.getLastResult().getErrors(), result.getErrors());
+        }
+    }
+    
+    @Test
+    void testBytesPastTheCheckpointAreDiscardedOnResume() throws Exception {
+        byte[] data = pdfOfSize(200_000);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.empty());
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofHours(1), 64 * 1024, clock);
+        IngestSession session = sessions.create(meta);
+        
+        assertThrows(IOException.class, () -> ingestor.ingestResumable(
+            session, config, failingAfter(data, 0, 100_000), new MockIngestSink()));
+        
+        // A crash between checkpoints leaves unrecorded bytes behind
+        Files.write(sessionDir.resolve(session.getId()).resolve("data"), new byte[5000], 
+                    StandardOpenOption.APPEND);
+        
+        IngestSession resumed = sessions.find(session.getId()).orElseThrow();
+        MockIngestSink sink = new MockIngestSink();
+        IngestResult result = ingestor.ingestResumable(
+            resumed, config, source(data, (int) resumed.getOffset(), data.length), sink);
+        
+        MockIngestSink direct = new MockIngestSink();
+        ingestor.ingest(meta, config, source(data, 0, data.length), direct);
+        assertEquals(direct.getLastResult().getSha256(), result.getSha256());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testStaleSnapshotIsRefused() throws Exception {
+        byte[] data = pdfOfSize(200_000);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length));
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofHours(1), 64 * 1024, clock);
+        IngestSession session = sessions.create(meta);
+        
+        assertThrows(IOException.class, () -> ingestor.ingestResumable(
+            session, config, failingAfter(data, 0, 100_000), new MockIngestSink()));
+        
+        // Retrying with the snapshot from before the failure would append at offset 0
+        IngestException stale = assertThrows(IngestException.class, () -> ingestor.ingestResumable(
+            session, config, source(data, 0, data.length), new MockIngestSink()));
+        assertTrue(stale.getMessage().contains("at offset 100000"), stale.getMessage());
+        
+        IngestSession fresh = sessions.find(session.getId()).orElseThrow();
+        assertEquals(100_000, fresh.getOffset(), "The refused attempt must leave the session alone");
+        MockIngestSink sink = new MockIngestSink();
+        IngestResult result = ingestor.ingestResumable(fresh, config, source(data, 100_000, data.length), sink);
+        
+        MockIngestSink direct = new MockIngestSink();
+        ingestor.ingest(meta, config, source(data, 0, data.length), direct);
+        assertEquals(direct.getLastResult().getSha256(), result.getSha256());
+    }
+    
+    @Test
+    void testSinkFailureKeepsTheSession() throws Exception {
+        byte[] data = pdfOfSize(50_000);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length));
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofHours(1), 64 * 1024, clock);
+        IngestSession session = sessions.create(meta);
+        
+        assertThrows(IOException.class, () -> ingestor.ingestResumable(session, config, 
+            source(data, 0, data.length), (m, result, replay) -> {
+                throw new IOException("sink unavailable");
+            }));
+        
+        IngestSession retry = sessions.find(session.getId()).orElseThrow();
+        assertEquals(data.length, retry.getOffset());
+        
+        MockIngestSink sink = new MockIngestSink();
+        IngestResult result = ingestor.ingestResumable(retry, config, source(data, 0, 0), sink);
+        assertTrue(result.isOk(), () -> "Errors: " + result.getErrors());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testExpiredSessionsAreCleanedUp() throws Exception {
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofMinutes(30), 64 * 1024, clock);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.empty());
+        IngestSession stale = sessions.create(meta);
+        
+        clock.advance(Duration.ofMinutes(20));
+        IngestSession fresh = sessions.create(meta);
+        clock.advance(Duration.ofMinutes(15));
+        
+        assertThrows(IngestException.class, () -> ingestor.ingestResumable(
+            stale, config, source(new byte[0], 0, 0), new MockIngestSink()));
+        assertEquals(1, sessions.purgeExpired());
+        assertFalse(sessions.find(stale.getId()).isPresent());
+        assertTrue(sessions.find(fresh.getId()).isPresent());
+        assertEquals(1, countSessions());
+    }
+    
+    @Test
+    void testUnknownSessionIdsAreNotResolved() throws Exception {
+        IngestSessions sessions = new IngestSessions(sessionDir, Duration.ofHours(1));
+        assertFalse(sessions.find("../etc").isPresent());
+        assertFalse(sessions.find("00000000-0000-0000-0000-000000000000").isPresent());
+    }
+    
+    private long countSessions() throws IOException {
+        try (Stream<Path> entries = Files.list(sessionDir)) {
+            return entries.count();
+        }
+    }
+    
+    private static ByteSource source(byte[] data, int from, int to) {
+        return new InputStreamByteSource(new ByteArrayInputStream(data, from, to - from));
+    }
+    
+    /**
+     * Serves {@code count} bytes from {@code from}, then fails like a dropped connection
+     */
+    private static ByteSource failingAfter(byte[] data, int from, int count) {
+        return new InputStreamByteSource(new FilterInputStream(new ByteArrayInputStream(data, from, count)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (available() == 0) {
+                    throw new IOException("connection reset");
+                }
+                return super.read(b, off, len);
+            }
+        });
+    }
+    
+    private static byte[] pdfOfSize(int size) {
+        byte[] data = new byte[size];
+        new Random(18).nextBytes(data);
+        System.arraycopy(new byte[]{0x25, 0x50, 0x44, 0x46, 0x2D}, 0, data, 0, 5);
+        return data;
+    }
+    
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
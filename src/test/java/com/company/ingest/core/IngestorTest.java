@@ -1,17 +1,53 @@
 package com.company.ingest.core;
 
+import com.company.ingest.dedup.DedupEntry;
+import com.company.ingest.dedup.FileDedupIndex;
+import com.company.ingest.dedup.InMemoryDedupIndex;
 import com.company.ingest.fixtures.MockIngestSink;
 import com.company.ingest.fixtures.TestDataFactory;
+import com.company.ingest.io.BufferPool;
 import com.company.ingest.io.ByteSource;
 import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.mime.MimeDetector;
+import com.company.ingest.mime.Signature;
+import com.company.ingest.mime.SignatureRegistry;
+import com.company.ingest.model.FailFastPolicy;
 import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.TreeHash;
 import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.DuplicateAwareSink;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,6 +71,12 @@ class IngestorTest {
         );
     }
     
+    @AfterEach
+    void checkNoBufferLeaks() {
+        BufferPool pool = BufferPool.shared();
+        assertEquals(0, pool.getOutstandingLeases(), "Leaked buffers:\n" + pool.describeLeaks());
+    }
+    
     @Test
     void testHappyPathPdf() throws Exception {
         byte[] pdfData = TestDataFactory.createMockPdf();
@@ -96,6 +138,641 @@ class IngestorTest {
         assertEquals(64, sink.getLastResult().getSha256().length()); // SHA-256 hex length
     }
     
+    @Test
+    void testDirectBufferPathMatchesHeapPath() throws Exception {
+        byte[] data = pdfOfSize(300_000);
+        
+        UploadMeta meta = new UploadMeta("big.pdf", "application/pdf", Optional.of((long) data.length));
+        
+        ingestor.ingest(meta, defaultConfig, 
+                        new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult heapResult = sink.getLastResult();
+        
+        IngestConfig directConfig = IngestConfig.builder(1_000_000, defaultConfig.getAcceptedMimes())
+            .directBuffers(true)
+            .chunkSize(64 * 1024)
+            .build();
+        ingestor.ingest(meta, directConfig, 
+                        new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult directResult = sink.getLastResult();
+        
+        assertTrue(directResult.isOk(), "Errors: " + directResult.getErrors());
+        assertEquals(heapResult.getSha256(), directResult.getSha256());
+        assertEquals(heapResult.getDetectedMime(), directResult.getDetectedMime());
+        assertEquals(data.length, directResult.getSize());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testAdaptiveSourceMatchesFixedSource() throws Exception {
+        byte[] data = pdfOfSize(2_000_000);
+        
+        UploadMeta meta = new UploadMeta("big.pdf", "application/pdf", Optional.of((long) data.length));
+        IngestConfig config = new IngestConfig(10_000_000, Set.of("application/pdf"));
+        
+        ingestor.ingest(meta, config, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        String fixedSha = sink.getLastResult().getSha256();
+        
+        ingestor.ingest(meta, config, 
+                        InputStreamByteSource.adaptive(new ByteArrayInputStream(data), 1024, 256 * 1024), 
+                        sink);
+        
+        assertTrue(sink.getLastResult().isOk(), "Errors: " + sink.getLastResult().getErrors());
+        assertEquals(fixedSha, sink.getLastResult().getSha256());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testFailFastAbortStopsReadingOversizedUpload() throws Exception {
+        byte[] data = pdfOfSize(1_000_000);
+        IngestConfig config = IngestConfig.builder(100_000, Set.of("application/pdf"))
+            .failFastPolicy(FailFastPolicy.ABORT)
+            .build();
+        
+        ingestor.ingest(new UploadMeta("big.pdf", "application/pdf", Optional.empty()), config,
+                        new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult result = sink.getLastResult();
+        
+        assertFalse(result.isOk());
+        assertFalse(result.isComplete());
+        assertNull(result.getSha256(), "A partial read has no meaningful digest");
+        assertTrue(result.getSize() > 100_000 && result.getSize() < data.length, 
+                   "Observed size: " + result.getSize());
+        assertEquals("application/pdf", result.getDetectedMime());
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.contains("Upload aborted")));
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.contains("exceeds maximum")));
+        assertEquals(0, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testFailFastAbortOnRejectedMime() throws Exception {
+        byte[] data = pdfOfSize(500_000);
+        IngestConfig config = IngestConfig.builder(1_000_000, Set.of("image/png"))
+            .failFastPolicy(FailFastPolicy.ABORT)
+            .build();
+        
+        ingestor.ingest(new UploadMeta("doc.pdf", "application/pdf", Optional.empty()), config,
+                        new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult result = sink.getLastResult();
+        
+        assertFalse(result.isComplete());
+        assertTrue(result.getSize() <= 512 + 8192, "Should stop right after the header chunk");
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.contains("not in accepted list")));
+    }
+    
+    @Test
+    void testFailFastDrainHashesWithoutSpooling() throws Exception {
+        byte[] data = pdfOfSize(1_000_000);
+        UploadMeta meta = new UploadMeta("big.pdf", "application/pdf", Optional.empty());
+        
+        ingestor.ingest(meta, new IngestConfig(100_000, Set.of("application/pdf")), 
+                        new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult spooled = sink.getLastResult();
+        assertEquals(data.length, sink.getBytesConsumed(), "Default policy spools and replays everything");
+        
+        IngestConfig drain = IngestConfig.builder(100_000, Set.of("application/pdf"))
+            .failFastPolicy(FailFastPolicy.DRAIN)
+            .build();
+        ingestor.ingest(meta, drain, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult drained = sink.getLastResult();
+        
+        assertFalse(drained.isOk());
+        assertTrue(drained.isComplete());
+        assertEquals(data.length, drained.getSize());
+        assertEquals(spooled.getSha256(), drained.getSha256());
+        assertEquals(spooled.getErrors(), drained.getErrors());
+        assertEquals(0, sink.getBytesConsumed(), "Discarded bytes are not replayed");
+    }
+    
+    @Test
+    void testFailFastLeavesAcceptedUploadsAlone() throws Exception {
+        byte[] data = pdfOfSize(300_000);
+        IngestConfig config = IngestConfig.builder(1_000_000, Set.of("application/pdf"))
+            .failFastPolicy(FailFastPolicy.ABORT)
+            .build();
+        
+        ingestor.ingest(new UploadMeta("ok.pdf", "application/pdf", Optional.of((long) data.length)), 
+                        config, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        
+        assertTrue(sink.getLastResult().isOk(), "Errors: " + sink.getLastResult().getErrors());
+        assertTrue(sink.getLastResult().isComplete());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testPipelinedPassMatchesSerialPass() throws Exception {
+        IngestConfig serial = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+            .spoolMemoryThreshold(64 * 1024)
+            .build();
+        IngestConfig pipelined = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+            .spoolMemoryThreshold(64 * 1024)
+            .pipelined(true)
+            .pipelineDepth(4)
+            .chunkSize(4096)
+            .build();
+        IngestConfig pipelinedDirect = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+            .pipelined(true)
+            .directBuffers(true)
+            .build();
+        
+        for (int size : new int[]{0, 1, 511, 512, 8192 * 3 + 5, 3_000_000}) {
+            byte[] data = size >= 4 ? pdfOfSize(size) : new byte[size];
+            UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) size));
+            
+            ingestor.ingest(meta, serial, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+            IngestResult expected = sink.getLastResult();
+            
+            for (IngestConfig config : new IngestConfig[]{pipelined, pipelinedDirect}) {
+                ingestor.ingest(meta, config, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+                IngestResult actual = sink.getLastResult();
+                
+                assertEquals(expected.getSha256(), actual.getSha256(), "size " + size);
+                assertEquals(expected.getSize(), actual.getSize());
+                assertEquals(expected.getDetectedMime(), actual.getDetectedMime());
+                assertEquals(expected.getErrors(), actual.getErrors());
+                assertEquals(size, sink.getBytesConsumed());
+            }
+        }
+    }
+    
+    @Test
+    void testPipelinedPassHonoursFailFast() throws Exception {
+        byte[] data = pdfOfSize(1_000_000);
+        UploadMeta meta = new UploadMeta("big.pdf", "application/pdf", Optional.empty());
+        
+        IngestConfig abort = IngestConfig.builder(100_000, Set.of("application/pdf"))
+            .pipelined(true)
+            .failFastPolicy(FailFastPolicy.ABORT)
+            .build();
+        ingestor.ingest(meta, abort, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        assertFalse(sink.getLastResult().isComplete());
+        assertEquals(0, sink.getBytesConsumed());
+        
+        IngestConfig drain = IngestConfig.builder(100_000, Set.of("application/pdf"))
+            .pipelined(true)
+            .failFastPolicy(FailFastPolicy.DRAIN)
+            .build();
+        ingestor.ingest(meta, drain, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        assertTrue(sink.getLastResult().isComplete());
+        assertEquals(data.length, sink.getLastResult().getSize());
+        assertEquals(0, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testPipelinedPassPropagatesSourceFailure() {
+        IngestConfig pipelined = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+            .pipelined(true)
+            .build();
+        InputStream failing = new InputStream() {
+            private int served = 0;
+            
+            @Override
+            public int read() throws IOException {
+                if (served++ < 100_000) {
+                    return 'x';
+                }
+                throw new IOException("connection reset");
+            }
+        };
+        
+        IOException error = assertThrows(IOException.class, () -> ingestor.ingest(
+            new UploadMeta("f.pdf", "application/pdf", Optional.empty()), pipelined,
+            new InputStreamByteSource(failing), sink));
+        assertEquals("connection reset", error.getMessage());
+    }
+    
+    @Test
+    void testFixedSourceIsReadInItsDeclaredChunkSize() throws Exception {
+        byte[] data = pdfOfSize(100_000);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length));
+        
+        for (boolean pipelined : new boolean[]{false, true}) {
+            IngestConfig config = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+                .pipelined(pipelined)
+                .chunkSize(8192)
+                .build();
+            List<Integer> requested = new ArrayList<>();
+            InputStream recording = new ByteArrayInputStream(data) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    requested.add(len);
+                    return super.read(b, off, len);
+                }
+            };
+            
+            ingestor.ingest(meta, config, new InputStreamByteSource(recording, 3000), sink);
+            
+            assertTrue(sink.getLastResult().isOk(), () -> "Errors: " + sink.getLastResult().getErrors());
+            assertEquals(Set.of(3000), Set.copyOf(requested), "pipelined " + pipelined);
+        }
+    }
+    
+    @Test
+    void testStreamingSinkCommitsAcceptedUpload() throws Exception {
+        MockIngestSink streamingSink = new MockIngestSink(true);
+        byte[] data = pdfOfSize(200_000);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length));
+        
+        ingestor.ingest(meta, defaultConfig, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult spooled = sink.getLastResult();
+        
+        for (boolean pipelined : new boolean[]{false, true}) {
+            IngestConfig config = IngestConfig.builder(1_000_000, Set.of("application/pdf"))
+                .pipelined(pipelined)
+                .build();
+            ingestor.ingest(meta, config, new InputStreamByteSource(new ByteArrayInputStream(data)), streamingSink);
+            
+            assertTrue(streamingSink.isCommitted());
+            assertFalse(streamingSink.isAborted());
+            assertEquals(data.length, streamingSink.getBytesConsumed());
+            assertEquals(spooled.getSha256(), streamingSink.getLastResult().getSha256());
+        }
+    }
+    
+    @Test
+    void testStreamingSinkAbortsRejectedUpload() throws Exception {
+        MockIngestSink streamingSink = new MockIngestSink(true);
+        byte[] data = TestDataFactory.createMockPdf();
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of(data.length + 1L));
+        
+        ingestor.ingest(meta, defaultConfig, new InputStreamByteSource(new ByteArrayInputStream(data)), streamingSink);
+        
+        assertTrue(streamingSink.isAborted());
+        assertFalse(streamingSink.isCommitted());
+        assertFalse(streamingSink.getLastResult().isOk());
+    }
+    
+    @Test
+    void testStreamingSinkStopsReceivingOnceRejected() throws Exception {
+        MockIngestSink streamingSink = new MockIngestSink(true);
+        byte[] data = pdfOfSize(1_000_000);
+        IngestConfig drain = IngestConfig.builder(100_000, Set.of("application/pdf"))
+            .failFastPolicy(FailFastPolicy.DRAIN)
+            .build();
+        
+        ingestor.ingest(new UploadMeta("big.pdf", "application/pdf", Optional.empty()), drain,
+            new InputStreamByteSource(new ByteArrayInputStream(data)), streamingSink);
+        
+        assertTrue(streamingSink.isAborted());
+        assertTrue(streamingSink.getBytesConsumed() < data.length);
+        assertEquals(data.length, streamingSink.getLastResult().getSize());
+    }
+    
+    @Test
+    void testStreamingSinkAbortedWithoutVerdictOnSourceFailure() {
+        MockIngestSink streamingSink = new MockIngestSink(true);
+        InputStream failing = new InputStream() {
+            private int served = 0;
+            
+            @Override
+            public int read() throws IOException {
+                if (served++ < 10_000) {
+                    return 'x';
+                }
+                throw new IOException("connection reset");
+            }
+        };
+        
+        assertThrows(IOException.class, () -> ingestor.ingest(
+            new UploadMeta("f.pdf", "application/pdf", Optional.empty()), defaultConfig,
+            new InputStreamByteSource(failing), streamingSink));
+        assertTrue(streamingSink.isAborted());
+        assertNull(streamingSink.getLastResult());
+    }
+    
+    @Test
+    void testIngestAsyncCompletesWithSinkResult() throws Exception {
+        byte[] data = pdfOfSize(300_000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<IngestResult> future = new Ingestor(executor).ingestAsync(
+                new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length)),
+                defaultConfig, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+            
+            IngestResult result = future.get(10, TimeUnit.SECONDS);
+            assertTrue(result.isOk());
+            assertSame(sink.getLastResult(), result);
+            assertEquals(data.length, sink.getBytesConsumed());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    void testIngestAsyncCancellationDeletesSpool() throws Exception {
+        Set<Path> spoolsBefore = spoolFiles();
+        CountDownLatch firstChunkRead = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        byte[] data = pdfOfSize(1_000_000);
+        InputStream stalling = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos > 0) {
+                    firstChunkRead.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.read(b, off, len);
+            }
+        };
+        IngestConfig diskSpool = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+            .spoolMemoryThreshold(0)
+            .build();
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<IngestResult> future = new Ingestor(executor).ingestAsync(
+            new UploadMeta("f.pdf", "application/pdf", Optional.empty()),
+            diskSpool, new InputStreamByteSource(stalling), sink);
+        
+        assertTrue(firstChunkRead.await(10, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        resume.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        
+        assertTrue(future.isCancelled());
+        assertNull(sink.getLastResult(), "Cancelled upload should not reach the sink");
+        assertEquals(spoolsBefore, spoolFiles(), "Spool file should be deleted");
+    }
+    
+    @Test
+    void testIngestAsyncReportsFailureThroughFuture() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        
+        CompletableFuture<IngestResult> future = ingestor.ingestAsync(
+            new UploadMeta("f.pdf", "application/pdf", Optional.empty()),
+            defaultConfig, new InputStreamByteSource(failing), sink);
+        
+        ExecutionException error = assertThrows(ExecutionException.class, 
+            () -> future.get(10, TimeUnit.SECONDS));
+        assertEquals("connection reset", error.getCause().getMessage());
+    }
+    
+    @Test
+    void testKnownDeclaredDigestSkipsReadingTheBody() throws Exception {
+        byte[] data = TestDataFactory.createMockPdf();
+        String sha256 = sha256Hex(data);
+        InMemoryDedupIndex index = new InMemoryDedupIndex(10);
+        index.record(new DedupEntry(sha256, data.length, "application/pdf"));
+        ByteSource unreadable = new InputStreamByteSource(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("body should not be read");
+            }
+        });
+        
+        Ingestor withIndex = new Ingestor(Runnable::run, index);
+        IngestResult result = withIndex.ingestAsync(declaring(sha256.toUpperCase(), data.length), 
+            defaultConfig, unreadable, new DuplicateAwareSink(sink, index)).get();
+        
+        assertTrue(result.isOk(), () -> "Errors: " + result.getErrors());
+        assertEquals(sha256, result.getSha256());
+        assertEquals(data.length, result.getSize());
+        assertEquals(1, sink.getAlreadyStoredCount());
+        
+        // A sink without a record of the content is sent the bytes
+        withIndex.ingest(declaring(sha256, data.length), defaultConfig, 
+            new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        assertTrue(sink.getLastResult().isOk());
+        assertEquals(1, sink.getAlreadyStoredCount());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testDeclaredDigestIsVerifiedWhenBodyIsRead() throws Exception {
+        byte[] data = TestDataFactory.createMockPdf();
+        Ingestor withIndex = new Ingestor(Runnable::run, new InMemoryDedupIndex(10));
+        
+        withIndex.ingest(declaring(sha256Hex(data), data.length), defaultConfig, 
+            new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        assertTrue(sink.getLastResult().isOk());
+        assertEquals(data.length, sink.getBytesConsumed());
+        
+        String wrong = "0".repeat(64);
+        withIndex.ingest(declaring(wrong, data.length), defaultConfig, 
+            new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        assertFalse(sink.getLastResult().isOk());
+        assertTrue(sink.getLastResult().getErrors().stream()
+            .anyMatch(e -> e.contains("SHA-256 mismatch") && e.contains(wrong)));
+    }
+    
+    @Test
+    void testMalformedDeclaredDigestIsReadAndVerified(@TempDir Path indexDir) throws Exception {
+        byte[] data = TestDataFactory.createMockPdf();
+        FileDedupIndex index = new FileDedupIndex(indexDir);
+        index.record(new DedupEntry(sha256Hex(data), data.length, "application/pdf"));
+        
+        new Ingestor(Runnable::run, index).ingest(declaring("not-hex", data.length), defaultConfig, 
+            new InputStreamByteSource(new ByteArrayInputStream(data)), new DuplicateAwareSink(sink, index));
+        
+        IngestResult result = sink.getLastResult();
+        assertFalse(result.isOk());
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.contains("SHA-256")), 
+                   () -> "Errors: " + result.getErrors());
+        assertEquals(0, sink.getAlreadyStoredCount());
+        assertEquals(data.length, sink.getBytesConsumed());
+    }
+    
+    @Test
+    void testKnownContentThatWouldBeRejectedIsStillRead() throws Exception {
+        byte[] data = TestDataFactory.createMockPdf();
+        String sha256 = sha256Hex(data);
+        InMemoryDedupIndex index = new InMemoryDedupIndex(10);
+        index.record(new DedupEntry(sha256, data.length, "application/pdf"));
+        IngestConfig pngOnly = new IngestConfig(1_000_000, Set.of("image/png"));
+        
+        new Ingestor(Runnable::run, index).ingest(declaring(sha256, data.length), pngOnly, 
+            new InputStreamByteSource(new ByteArrayInputStream(data)), new DuplicateAwareSink(sink, index));
+        
+        assertEquals(0, sink.getAlreadyStoredCount());
+        assertEquals(data.length, sink.getBytesConsumed());
+        assertFalse(sink.getLastResult().isOk());
+    }
+    
+    @Test
+    void testConfiguredDigestsMatchJdkInBothPasses() throws Exception {
+        byte[] data = pdfOfSize(1_000_000);
+        UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length));
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        Map<String, String> expected = Map.of(
+            "SHA-256", sha256Hex(data),
+            "MD5", hex(MessageDigest.getInstance("MD5").digest(data)),
+            "SHA-1", hex(MessageDigest.getInstance("SHA-1").digest(data)),
+            "CRC32C", String.format("%08x", crc.getValue()));
+        
+        for (boolean pipelined : new boolean[]{false, true}) {
+            IngestConfig config = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+                .digests("md5", "SHA-1", "CRC32C")
+                .pipelined(pipelined)
+                .build();
+            ingestor.ingest(meta, config, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+            
+            IngestResult result = sink.getLastResult();
+            assertTrue(result.isOk(), result.getErrors().toString());
+            assertEquals(expected, result.getDigests(), "pipelined " + pipelined);
+            assertEquals(expected.get("MD5"), result.getDigest("md5"));
+        }
+        
+        assertThrows(IllegalArgumentException.class, 
+            () -> IngestConfig.builder(1, Set.of()).digests("NO-SUCH-DIGEST"));
+    }
+    
+    @Test
+    void testDeclaredDigestsAreVerifiedInTheSamePass() throws Exception {
+        byte[] data = TestDataFactory.createMockPdf();
+        String md5 = hex(MessageDigest.getInstance("MD5").digest(data));
+        
+        UploadMeta matching = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length), 
+                                             Map.of("MD5", md5.toUpperCase(), "sha-256", sha256Hex(data)));
+        ingestor.ingest(matching, defaultConfig, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        assertTrue(sink.getLastResult().isOk(), sink.getLastResult().getErrors().toString());
+        assertEquals(md5, sink.getLastResult().getDigest("MD5"));
+        
+        UploadMeta wrong = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) data.length), 
+                                          Map.of("md5", "0".repeat(32), "x-unknown", "abcd"));
+        ingestor.ingest(wrong, defaultConfig, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+        IngestResult result = sink.getLastResult();
+        assertFalse(result.isOk());
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.startsWith("MD5 mismatch")));
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.contains("x-unknown digest could not be verified")));
+    }
+    
+    @Test
+    void testTreeHashMatchesReferenceInBothPasses() throws Exception {
+        int leafSize = IngestConfig.MIN_TREE_LEAF_SIZE;
+        
+        for (int size : new int[]{0, 4, leafSize - 1, leafSize, 5 * leafSize + 3, 300_000}) {
+            byte[] data = size >= 4 ? pdfOfSize(size) : new byte[size];
+            UploadMeta meta = new UploadMeta("f.pdf", "application/pdf", Optional.of((long) size));
+            List<byte[]> leaves = new ArrayList<>();
+            for (int from = 0; from < size; from += leafSize) {
+                leaves.add(treeDigest(0x00, Arrays.copyOfRange(data, from, Math.min(size, from + leafSize))));
+            }
+            
+            for (boolean pipelined : new boolean[]{false, true}) {
+                IngestConfig config = IngestConfig.builder(10_000_000, Set.of("application/pdf"))
+                    .treeHash(leafSize)
+                    .chunkSize(3000)
+                    .pipelined(pipelined)
+                    .build();
+                ingestor.ingest(meta, config, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+                
+                TreeHash tree = sink.getLastResult().getTreeHash();
+                assertEquals(leaves.stream().map(IngestorTest::hex).toList(), tree.getLeaves(), "size " + size);
+                assertEquals(hex(merkleRoot(leaves)), tree.getRoot(), "size " + size);
+                assertEquals(sha256Hex(data), sink.getLastResult().getSha256());
+            }
+        }
+        
+        byte[] pdf = TestDataFactory.createMockPdf();
+        ingestor.ingest(new UploadMeta("f.pdf", "application/pdf", Optional.of((long) pdf.length)), defaultConfig, 
+            new InputStreamByteSource(new ByteArrayInputStream(pdf)), sink);
+        assertNull(sink.getLastResult().getTreeHash(), "Tree hashing is off by default");
+        assertThrows(IllegalArgumentException.class, () -> IngestConfig.builder(1, Set.of()).treeHash(1024));
+    }
+    
+    @Test
+    void testZipEntriesDecideTheFormatAtEndOfStream() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : new String[]{"[Content_Types].xml", "_rels/.rels", "xl/workbook.xml"}) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(pdfOfSize(10_000));
+                zip.closeEntry();
+            }
+        }
+        byte[] xlsx = bytes.toByteArray();
+        String xlsxMime = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        UploadMeta meta = new UploadMeta("book.xlsx", xlsxMime, Optional.of((long) xlsx.length));
+        
+        for (boolean pipelined : new boolean[]{false, true}) {
+            // The header alone looks like a DOCX; the MIME check must wait for the entries
+            IngestConfig config = IngestConfig.builder(1_000_000, Set.of(xlsxMime))
+                .failFastPolicy(FailFastPolicy.ABORT)
+                .pipelined(pipelined)
+                .build();
+            ingestor.ingest(meta, config, new InputStreamByteSource(new ByteArrayInputStream(xlsx)), sink);
+            
+            assertTrue(sink.getLastResult().isOk(), sink.getLastResult().getErrors().toString());
+            assertEquals(xlsxMime, sink.getLastResult().getDetectedMime());
+            assertEquals(xlsx.length, sink.getBytesConsumed());
+        }
+    }
+    
+    @Test
+    void testTextFormatsAreSniffedDuringThePass() throws Exception {
+        StringBuilder csv = new StringBuilder("id,name,amount\n");
+        for (int i = 0; i < 2_000; i++) {
+            csv.append(i).append(",\"Müller, Jürgen\",").append(i * 7 % 1000).append('\n');
+        }
+        byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] binary = new byte[data.length];
+        new Random(7).nextBytes(binary);
+        
+        for (boolean pipelined : new boolean[]{false, true}) {
+            // Nothing matches the header, so the MIME check waits for the sniffer
+            IngestConfig config = IngestConfig.builder(1_000_000, Set.of("text/csv"))
+                .failFastPolicy(FailFastPolicy.ABORT)
+                .chunkSize(1000)
+                .pipelined(pipelined)
+                .build();
+            ingestor.ingest(new UploadMeta("rows.csv", "text/csv", Optional.of((long) data.length)), config, 
+                new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+            
+            assertTrue(sink.getLastResult().isOk(), sink.getLastResult().getErrors().toString());
+            assertEquals("text/csv", sink.getLastResult().getDetectedMime());
+            assertEquals(data.length, sink.getBytesConsumed());
+            
+            // A header that cannot be text is still rejected as soon as it is seen
+            ingestor.ingest(new UploadMeta("rows.csv", "text/csv", Optional.empty()), config, 
+                new InputStreamByteSource(new ByteArrayInputStream(binary)), sink);
+            IngestResult rejected = sink.getLastResult();
+            assertFalse(rejected.isComplete());
+            assertEquals("application/octet-stream", rejected.getDetectedMime());
+            assertTrue(rejected.getSize() < binary.length, "Observed size: " + rejected.getSize());
+        }
+    }
+    
+    @Test
+    void testDetectionWindowFollowsTheDeepestSignature() throws Exception {
+        byte[] tar = new byte[10_240];
+        System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, tar, 257, 5);
+        IngestConfig tarConfig = IngestConfig.builder(1_000_000, Set.of("application/x-tar"))
+            .chunkSize(100)
+            .build();
+        ingestor.ingest(new UploadMeta("a.tar", "application/x-tar", Optional.of((long) tar.length)), tarConfig, 
+            new InputStreamByteSource(new ByteArrayInputStream(tar)), sink);
+        assertEquals("application/x-tar", sink.getLastResult().getDetectedMime());
+        
+        byte[] iso = new byte[40_000];
+        System.arraycopy("CD001".getBytes(StandardCharsets.US_ASCII), 0, iso, 32_769, 5);
+        SignatureRegistry previous = MimeDetector.useRegistry(SignatureRegistry.builder()
+            .addAll(SignatureRegistry.defaults().getSignatures())
+            .add(Signature.of("application/x-iso9660-image", 32_769, "4344303031"))
+            .build());
+        try {
+            assertEquals(32_774, UploadObserver.detectionWindow(MimeDetector.registry()));
+            IngestConfig isoConfig = IngestConfig.builder(1_000_000, Set.of("application/x-iso9660-image"))
+                .failFastPolicy(FailFastPolicy.ABORT)
+                .build();
+            ingestor.ingest(new UploadMeta("a.iso", "application/x-iso9660-image", Optional.of((long) iso.length)), 
+                isoConfig, new InputStreamByteSource(new ByteArrayInputStream(iso)), sink);
+            assertTrue(sink.getLastResult().isOk(), sink.getLastResult().getErrors().toString());
+            assertEquals("application/x-iso9660-image", sink.getLastResult().getDetectedMime());
+        } finally {
+            MimeDetector.useRegistry(previous);
+        }
+    }
+    
     @Test
     void testContentLengthMismatch() throws Exception {
         byte[] data = TestDataFactory.createMockPdf();
@@ -210,4 +887,63 @@ class IngestorTest {
         assertTrue(sink.getLastResult().getErrors().stream()
             .anyMatch(e -> e.contains("MIME type mismatch")));
     }
-}
\ No newline at end of file
+    
+    private static UploadMeta declaring(String sha256, long length) {
+        return new UploadMeta("f.pdf", "application/pdf", Optional.of(length), 
+                              Map.of("sha-256", sha256));
+    }
+    
+    private static String sha256Hex(byte[] data) throws Exception {
+        return hex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+    
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * RFC 6962 tree hash over ready leaf hashes, written out independently of the stage
+     */
+    private static byte[] merkleRoot(List<byte[]> leaves) throws Exception {
+        if (leaves.isEmpty()) {
+            return MessageDigest.getInstance("SHA-256").digest();
+        }
+        if (leaves.size() == 1) {
+            return leaves.get(0);
+        }
+        int split = 1;
+        while (split * 2 < leaves.size()) {
+            split *= 2;
+        }
+        byte[] left = merkleRoot(leaves.subList(0, split));
+        byte[] right = merkleRoot(leaves.subList(split, leaves.size()));
+        byte[] node = new byte[64];
+        System.arraycopy(left, 0, node, 0, 32);
+        System.arraycopy(right, 0, node, 32, 32);
+        return treeDigest(0x01, node);
+    }
+    
+    private static byte[] treeDigest(int prefix, byte[] data) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) prefix);
+        return digest.digest(data);
+    }
+    
+    private static Set<Path> spoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("ingest-"))
+                .collect(Collectors.toSet());
+        }
+    }
+    
+    private static byte[] pdfOfSize(int size) {
+        byte[] data = new byte[size];
+        new Random(3).nextBytes(data);
+        System.arraycopy(TestDataFactory.createMockPdf(), 0, data, 0, 4);
+        return data;
+    }
+}
@@ -0,0 +1,63 @@
+package com.company.ingest.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SHA-256 with exportable state
+ */
+class ResumableSha256Test {
+    
+    @Test
+    void testMatchesJdkSha256() throws Exception {
+        Random random = new Random(18);
+        for (int length : new int[]{0, 1, 55, 56, 63, 64, 65, 119, 120, 1000, 100_003}) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            
+            ResumableSha256 digest = new ResumableSha256();
+            // Uneven updates cross block boundaries in every way
+            int position = 0;
+            while (position < length) {
+                int step = Math.min(length - position, 1 + random.nextInt(150));
+                digest.update(data, position, step);
+                position += step;
+            }
+            
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest(), 
+                "length " + length);
+        }
+    }
+    
+    @Test
+    void testExportedStateResumesTheSameDigest() throws Exception {
+        byte[] data = new byte[10_000];
+        new Random(7).nextBytes(data);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+        
+        for (int split : new int[]{0, 1, 63, 64, 65, 4097, 9_999, 10_000}) {
+            ResumableSha256 first = new ResumableSha256();
+            first.update(data, 0, split);
+            
+            ResumableSha256 resumed = ResumableSha256.restore(first.exportState());
+            assertEquals(split, resumed.byteCount());
+            resumed.update(ByteBuffer.allocateDirect(data.length - split).put(data, split, data.length - split).flip());
+            
+            assertArrayEquals(expected, resumed.digest(), "split at " + split);
+        }
+    }
+    
+    @Test
+    void testDigestResetsForReuse() throws Exception {
+        ResumableSha256 digest = new ResumableSha256();
+        digest.update(new byte[]{1, 2, 3});
+        digest.digest();
+        
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(new byte[0]), digest.digest());
+    }
+}
@@ -0,0 +1,82 @@
+package com.company.ingest.core;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plain SHA-256 on one core vs the Merkle tree hash on the common fork/join pool
+ *
+ * Both hash the same in-memory bytes fed in 64KB chunks, as the processing
+ * pass would, so only hashing is measured. Kept in this package for access
+ * to the package-private stages; see com.company.ingest.manual for the
+ * end-to-end benchmarks.
+ *
+ * Run from IDE: Right-click → Run 'TreeHashBenchmark.main()'
+ * Run from Maven: mvn test-compile exec:java -Dexec.classpathScope=test 
+ *                     -Dexec.mainClass="com.company.ingest.core.TreeHashBenchmark"
+ */
+public class TreeHashBenchmark {
+    
+    private static final long UPLOAD_SIZE = 2L * 1024 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int ROUNDS = 3;
+    
+    private static final byte[] BLOCK = new byte[1024 * 1024];
+    
+    static {
+        new Random(5).nextBytes(BLOCK);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("Tree hash benchmark: " + (UPLOAD_SIZE >> 20) + " MB, best of " + ROUNDS 
+            + ", pool parallelism " + ForkJoinPool.commonPool().getParallelism() + "\n");
+        System.out.printf("%-26s %12s %10s %16s%n", "Hash", "MB/s", "cores", "MB/s per core");
+        System.out.println("─".repeat(68));
+        
+        run("SHA-256, single core", () -> new DigestStage(MessageDigest.getInstance("SHA-256")));
+        for (int leafSize : new int[]{64 * 1024, 1024 * 1024, 4 * 1024 * 1024}) {
+            run("tree, " + (leafSize >> 10) + "KB leaves", 
+                () -> new TreeHashStage(leafSize, ForkJoinPool.commonPool()));
+        }
+    }
+    
+    private static void run(String name, StageFactory factory) throws Exception {
+        double bestMbps = 0;
+        double bestCores = 0;
+        for (int round = 0; round < ROUNDS + 1; round++) {
+            ChunkStage stage = factory.create();
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            
+            long cpuStart = processCpuNanos();
+            long start = System.nanoTime();
+            for (long position = 0; position < UPLOAD_SIZE; position += CHUNK_SIZE) {
+                chunk.clear();
+                chunk.put(BLOCK, (int) (position % BLOCK.length), CHUNK_SIZE).flip();
+                stage.accept(chunk);
+            }
+            stage.finish();
+            long wall = System.nanoTime() - start;
+            long cpu = processCpuNanos() - cpuStart;
+            
+            double mbps = (UPLOAD_SIZE / 1048576.0) / (wall / 1e9);
+            if (round > 0 && mbps > bestMbps) { // round 0 is warm-up
+                bestMbps = mbps;
+                bestCores = (double) cpu / wall;
+            }
+        }
+        
+        System.out.printf("%-26s %12.1f %10.2f %16.1f%n", name, bestMbps, bestCores, bestMbps / bestCores);
+    }
+    
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) 
+                ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+    
+    private interface StageFactory {
+        ChunkStage create() throws Exception;
+    }
+}
@@ -0,0 +1,74 @@
+package com.company.ingest.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the dedup index tiers
+ */
+class TieredDedupIndexTest {
+    
+    @TempDir
+    Path indexDir;
+    
+    @Test
+    void testMemoryTierEvictsLeastRecentlyUsed() {
+        InMemoryDedupIndex memory = new InMemoryDedupIndex(2);
+        memory.record(entry('a'));
+        memory.record(entry('b'));
+        memory.lookup(digest('a')); // a is now more recent than b
+        memory.record(entry('c'));
+        
+        assertEquals(2, memory.size());
+        assertTrue(memory.lookup(digest('a')).isPresent());
+        assertFalse(memory.lookup(digest('b')).isPresent());
+        assertTrue(memory.lookup(digest('c')).isPresent());
+    }
+    
+    @Test
+    void testFileTierSurvivesReopen() throws Exception {
+        new FileDedupIndex(indexDir).record(new DedupEntry(digest('d'), 1234, "application/pdf"));
+        
+        Optional<DedupEntry> hit = new FileDedupIndex(indexDir).lookup(digest('d'));
+        assertTrue(hit.isPresent());
+        assertEquals(1234, hit.get().getSize());
+        assertEquals("application/pdf", hit.get().getMime());
+        assertFalse(new FileDedupIndex(indexDir).lookup(digest('e')).isPresent());
+    }
+    
+    @Test
+    void testFileTierRejectsMalformedDigests() throws Exception {
+        FileDedupIndex index = new FileDedupIndex(indexDir);
+        assertThrows(IllegalArgumentException.class, () -> index.lookup("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> index.lookup(digest('A')));
+    }
+    
+    @Test
+    void testPersistentHitsArePromotedToMemory() throws Exception {
+        new FileDedupIndex(indexDir).record(entry('f'));
+        
+        InMemoryDedupIndex memory = new InMemoryDedupIndex(10);
+        TieredDedupIndex tiered = new TieredDedupIndex(memory, new FileDedupIndex(indexDir));
+        
+        assertFalse(memory.lookup(digest('f')).isPresent());
+        assertTrue(tiered.lookup(digest('f')).isPresent());
+        assertTrue(memory.lookup(digest('f')).isPresent(), "Hit should be promoted");
+        
+        tiered.record(entry('0'));
+        assertTrue(new FileDedupIndex(indexDir).lookup(digest('0')).isPresent());
+        assertTrue(memory.lookup(digest('0')).isPresent());
+    }
+    
+    private static String digest(char fill) {
+        return String.valueOf(fill).repeat(64);
+    }
+    
+    private static DedupEntry entry(char fill) {
+        return new DedupEntry(digest(fill), 100, "application/pdf");
+    }
+}
@@ -6,14 +6,27 @@ import com.company.ingest.model.UploadMeta;
 import com.company.ingest.sink.IngestSink;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
- * Mock sink for testing that counts bytes
+ * Mock sink for testing that counts bytes, either replayed or streamed
  */
 public class MockIngestSink implements IngestSink {
+    private final boolean streaming;
     private long bytesConsumed = 0;
     private UploadMeta lastMeta;
     private IngestResult lastResult;
+    private boolean committed;
+    private boolean aborted;
+    private int alreadyStored;
+    
+    public MockIngestSink() {
+        this(false);
+    }
+    
+    public MockIngestSink(boolean streaming) {
+        this.streaming = streaming;
+    }
     
     @Override
     public void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException {
@@ -21,12 +34,55 @@ public class MockIngestSink implements IngestSink {
         this.lastResult = result;
         this.bytesConsumed = 0;
         
-        byte[] chunk;
-        while ((chunk = data.nextChunk()).length > 0) {
-            bytesConsumed += chunk.length;
+        byte[] buffer = new byte[ByteSource.DEFAULT_CHUNK_SIZE];
+        int bytesRead;
+        while ((bytesRead = data.read(buffer, 0, buffer.length)) != -1) {
+            bytesConsumed += bytesRead;
         }
     }
     
+    @Override
+    public void alreadyStored(UploadMeta meta, IngestResult result) {
+        this.lastMeta = meta;
+        this.lastResult = result;
+        this.bytesConsumed = 0;
+        this.alreadyStored++;
+    }
+    
+    @Override
+    public boolean supportsStreaming() {
+        return streaming;
+    }
+    
+    @Override
+    public Upload begin(UploadMeta meta) {
+        this.lastMeta = meta;
+        this.lastResult = null;
+        this.bytesConsumed = 0;
+        this.committed = false;
+        this.aborted = false;
+        
+        return new Upload() {
+            @Override
+            public void write(ByteBuffer chunk) {
+                bytesConsumed += chunk.remaining();
+                chunk.position(chunk.limit());
+            }
+            
+            @Override
+            public void commit(IngestResult result) {
+                lastResult = result;
+                committed = true;
+            }
+            
+            @Override
+            public void abort(IngestResult result) {
+                lastResult = result;
+                aborted = true;
+            }
+        };
+    }
+    
     public long getBytesConsumed() {
         return bytesConsumed;
     }
@@ -39,9 +95,27 @@ public class MockIngestSink implements IngestSink {
         return lastResult;
     }
     
+    public boolean isCommitted() {
+        return committed;
+    }
+    
+    public boolean isAborted() {
+        return aborted;
+    }
+    
+    /**
+     * Number of already-stored notifications received
+     */
+    public int getAlreadyStoredCount() {
+        return alreadyStored;
+    }
+    
     public void reset() {
         bytesConsumed = 0;
         lastMeta = null;
         lastResult = null;
+        committed = false;
+        aborted = false;
+        alreadyStored = 0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.company.ingest.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for adaptive chunk sizing
+ */
+class AdaptiveChunkSizerTest {
+
+    @Test
+    void testFullReadsGrowUpToCeiling() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(1024, 16 * 1024);
+        
+        for (int i = 0; i < 100; i++) {
+            int size = sizer.getChunkSize();
+            sizer.record(size, size, size); // constant 1 byte/ns
+        }
+        
+        assertEquals(16 * 1024, sizer.getChunkSize());
+    }
+    
+    @Test
+    void testSparseReadsShrinkToFloor() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(1024, 64 * 1024);
+        for (int i = 0; i < 40; i++) {
+            int size = sizer.getChunkSize();
+            sizer.record(size, size, size);
+        }
+        assertEquals(64 * 1024, sizer.getChunkSize());
+        
+        // A trickling source only ever returns a few hundred bytes
+        for (int i = 0; i < 100; i++) {
+            sizer.record(sizer.getChunkSize(), 200, 1000);
+        }
+        
+        assertEquals(1024, sizer.getChunkSize());
+    }
+    
+    @Test
+    void testGrowthThatSlowsThroughputIsUndone() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(1024, 64 * 1024);
+        
+        // Reads of 4KB or more get much slower per byte; growth should settle at 2KB
+        for (int i = 0; i < 200; i++) {
+            int size = sizer.getChunkSize();
+            long nanos = size >= 4096 ? size * 4L : size;
+            sizer.record(size, size, nanos);
+        }
+        
+        assertEquals(2048, sizer.getChunkSize());
+    }
+    
+    @Test
+    void testAdaptiveSourceCapsReadsAtCurrentSize() throws Exception {
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 0;
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len; // always fills the request
+            }
+        };
+        
+        InputStreamByteSource source = InputStreamByteSource.adaptive(endless, 1024, 32 * 1024);
+        assertTrue(source.isAdaptive());
+        assertEquals(1024, source.preferredChunkSize());
+        
+        byte[] buffer = new byte[1024 * 1024];
+        assertEquals(1024, source.read(buffer, 0, buffer.length), "Reads are capped at the current size");
+        
+        for (int i = 0; i < 100; i++) {
+            source.read(buffer, 0, buffer.length);
+        }
+        assertTrue(source.preferredChunkSize() > 1024, "Full reads should grow the chunk size");
+        assertTrue(source.preferredChunkSize() <= 32 * 1024);
+    }
+    
+    @Test
+    void testDefaultSourceHasNoPreference() {
+        ByteSource source = new InputStreamByteSource(new ByteArrayInputStream(new byte[0]));
+        assertEquals(0, source.preferredChunkSize());
+    }
+    
+    @Test
+    void testFixedSourcePrefersItsDeclaredSize() {
+        ByteSource source = new InputStreamByteSource(new ByteArrayInputStream(new byte[0]), 3000);
+        assertEquals(3000, source.preferredChunkSize());
+    }
+}
@@ -0,0 +1,105 @@
+package com.company.ingest.io;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the shared buffer pool
+ */
+class BufferPoolTest {
+
+    @Test
+    void testLeaseRoundsUpToSizeClass() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        
+        try (BufferPool.Lease small = pool.lease(100);
+             BufferPool.Lease chunk = pool.lease(8192);
+             BufferPool.Lease odd = pool.lease(8193)) {
+            assertEquals(512, small.capacity());
+            assertEquals(8192, chunk.capacity());
+            assertEquals(16384, odd.capacity());
+        }
+    }
+    
+    @Test
+    void testReleasedBufferIsReused() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        
+        BufferPool.Lease first = pool.lease(8192);
+        byte[] array = first.array();
+        first.release();
+        assertEquals(8192, pool.getPooledBytes());
+        
+        try (BufferPool.Lease second = pool.lease(8000)) {
+            assertSame(array, second.array());
+            assertEquals(0, pool.getPooledBytes());
+        }
+    }
+    
+    @Test
+    void testDirectLeasesArePooledSeparately() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        
+        BufferPool.Lease direct = pool.leaseDirect(8192);
+        assertTrue(direct.buffer().isDirect());
+        assertThrows(UnsupportedOperationException.class, direct::array);
+        direct.release();
+        
+        try (BufferPool.Lease heap = pool.lease(8192)) {
+            assertFalse(heap.isDirect(), "Heap request must not receive the pooled direct buffer");
+        }
+        try (BufferPool.Lease again = pool.leaseDirect(8192)) {
+            assertTrue(again.isDirect());
+        }
+    }
+    
+    @Test
+    void testPooledBytesNeverExceedCap() {
+        BufferPool pool = new BufferPool(16 * 1024);
+        
+        BufferPool.Lease[] leases = new BufferPool.Lease[4];
+        for (int i = 0; i < leases.length; i++) {
+            leases[i] = pool.lease(8192);
+        }
+        for (BufferPool.Lease lease : leases) {
+            lease.release();
+        }
+        
+        assertEquals(16 * 1024, pool.getPooledBytes(), "Only two 8KB buffers fit under the cap");
+    }
+    
+    @Test
+    void testOversizedRequestsAreNotPooled() {
+        BufferPool pool = new BufferPool(64 * 1024 * 1024);
+        
+        pool.lease(2 * 1024 * 1024).release();
+        
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(0, pool.getOutstandingLeases());
+    }
+    
+    @Test
+    void testLeakTrackingReportsUnreleasedLease() {
+        BufferPool pool = new BufferPool(1024 * 1024, true);
+        
+        BufferPool.Lease leaked = pool.lease(4096);
+        assertEquals(1, pool.getOutstandingLeases());
+        assertTrue(pool.describeLeaks().contains("testLeakTrackingReportsUnreleasedLease"));
+        
+        leaked.release();
+        assertEquals(0, pool.getOutstandingLeases());
+        assertEquals("", pool.describeLeaks());
+    }
+    
+    @Test
+    void testDoubleReleaseAndUseAfterReleaseAreRejected() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        BufferPool.Lease lease = pool.lease(4096);
+        lease.release();
+        
+        assertThrows(IllegalStateException.class, lease::release);
+        assertThrows(IllegalStateException.class, lease::array);
+        lease.close(); // close after release stays quiet
+    }
+}
@@ -0,0 +1,249 @@
+package com.company.ingest.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ByteSource read contracts
+ */
+class ByteSourceTest {
+
+    @Test
+    void testReadIntoReusedBuffer() throws Exception {
+        byte[] data = randomBytes(20_000);
+        
+        try (ByteSource source = new InputStreamByteSource(new ByteArrayInputStream(data))) {
+            assertArrayEquals(data, drain(source, 4096));
+        }
+    }
+    
+    @Test
+    void testReadHonoursOffsetAndLength() throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        byte[] buffer = new byte[8];
+        
+        try (ByteSource source = new InputStreamByteSource(new ByteArrayInputStream(data))) {
+            int bytesRead = source.read(buffer, 2, 3);
+            
+            assertEquals(3, bytesRead);
+            assertArrayEquals(new byte[]{0, 0, 1, 2, 3, 0, 0, 0}, buffer);
+        }
+    }
+    
+    @Test
+    void testNextChunkStillWorks() throws Exception {
+        byte[] data = randomBytes(10_000);
+        
+        try (ByteSource source = new InputStreamByteSource(new ByteArrayInputStream(data), 4096)) {
+            assertEquals(4096, source.nextChunk().length);
+            assertEquals(4096, source.nextChunk().length);
+            assertEquals(10_000 - 8192, source.nextChunk().length);
+            assertEquals(0, source.nextChunk().length);
+        }
+    }
+    
+    @Test
+    void testFileSourceReadAndDeleteOnClose() throws Exception {
+        byte[] data = randomBytes(30_000);
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, data);
+        
+        try (ByteSource source = new FileByteSource(file, true)) {
+            assertArrayEquals(data, drain(source, 8192));
+        }
+        
+        assertFalse(Files.exists(file), "Temp file should be deleted on close");
+    }
+    
+    @Test
+    void testMappedFileSourceRollsThroughWindows() throws Exception {
+        byte[] data = randomBytes(100_000);
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, data);
+        
+        // 16KB windows force several remaps over a 100KB file
+        try (FileByteSource source = new FileByteSource(file, true, 0, 16 * 1024)) {
+            assertTrue(source.isMapped());
+            assertArrayEquals(data, drain(source, 5000));
+        }
+        
+        assertFalse(Files.exists(file), "Temp file should be deleted on close");
+    }
+    
+    @Test
+    void testMappedNextBufferReturnsSlices() throws Exception {
+        byte[] data = randomBytes(100_000);
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, data);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileByteSource source = new FileByteSource(file, true, 0, 16 * 1024)) {
+            ByteBuffer buffer;
+            while ((buffer = source.nextBuffer()).hasRemaining()) {
+                assertTrue(buffer.isDirect(), "Mapped slices should not be heap copies");
+                byte[] copy = new byte[buffer.remaining()];
+                buffer.get(copy);
+                out.write(copy);
+            }
+        }
+        
+        assertArrayEquals(data, out.toByteArray());
+    }
+    
+    @Test
+    void testSmallFileBelowThresholdIsNotMapped() throws Exception {
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, new byte[]{1, 2, 3});
+        
+        try (FileByteSource source = new FileByteSource(file, true, 1024)) {
+            assertFalse(source.isMapped());
+            assertArrayEquals(new byte[]{1, 2, 3}, drain(source, 16));
+        }
+    }
+    
+    @Test
+    void testFileTransferToContinuesFromCurrentPosition() throws Exception {
+        byte[] data = randomBytes(50_000);
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, data);
+        
+        for (long threshold : new long[]{Long.MAX_VALUE, 0}) {
+            try (FileByteSource source = new FileByteSource(file, false, threshold, 16 * 1024)) {
+                assertTrue(source.supportsTransferTo());
+                
+                byte[] head = new byte[1000];
+                assertEquals(1000, source.read(head, 0, head.length));
+                
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                out.write(head);
+                long transferred = source.transferTo(Channels.newChannel(out));
+                
+                assertEquals(data.length - 1000, transferred);
+                assertArrayEquals(data, out.toByteArray());
+                assertEquals(-1, source.read(head, 0, head.length), "Source should be at EOF");
+            }
+        }
+        
+        Files.delete(file);
+    }
+    
+    @Test
+    void testFileTransferToFallsBackWhenTargetStalls() throws Exception {
+        byte[] data = randomBytes(50_000);
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, data);
+        
+        for (long threshold : new long[]{Long.MAX_VALUE, 0}) {
+            try (FileByteSource source = new FileByteSource(file, false, threshold, 16 * 1024)) {
+                byte[] head = new byte[1000];
+                assertEquals(1000, source.read(head, 0, head.length));
+                
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                out.write(head);
+                assertEquals(data.length - 1000, source.transferTo(stalling(out)));
+                assertArrayEquals(data, out.toByteArray());
+                assertEquals(-1, source.read(head, 0, head.length), "Source should be at EOF");
+            }
+        }
+        
+        Files.delete(file);
+    }
+    
+    @Test
+    void testStreamTransferToFallsBackToCopyLoop() throws Exception {
+        byte[] data = randomBytes(20_000);
+        
+        try (ByteSource source = new InputStreamByteSource(new ByteArrayInputStream(data))) {
+            assertFalse(source.supportsTransferTo());
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(data.length, source.transferTo(Channels.newChannel(out)));
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+    
+    @Test
+    void testReadIntoDirectBuffer() throws Exception {
+        byte[] data = randomBytes(50_000);
+        Path file = Files.createTempFile("bytesource-", ".tmp");
+        Files.write(file, data);
+        
+        // Stream adapter, plain channel and mapped window should all fill direct buffers
+        ByteSource[] sources = {
+            new InputStreamByteSource(new ByteArrayInputStream(data)),
+            new FileByteSource(file, false),
+            new FileByteSource(file, false, 0, 16 * 1024)
+        };
+        
+        for (ByteSource source : sources) {
+            try (source) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(6000);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    byte[] copy = new byte[buffer.remaining()];
+                    buffer.get(copy);
+                    out.write(copy);
+                    buffer.clear();
+                }
+                assertArrayEquals(data, out.toByteArray());
+            }
+        }
+        
+        Files.delete(file);
+    }
+    
+    /**
+     * Channel into {@code out} that accepts nothing on every other write, like
+     * a non-blocking target that is not always ready
+     */
+    static WritableByteChannel stalling(ByteArrayOutputStream out) {
+        WritableByteChannel delegate = Channels.newChannel(out);
+        return new WritableByteChannel() {
+            private boolean stallNext = true;
+            
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                stallNext = !stallNext;
+                return stallNext ? delegate.write(source) : 0;
+            }
+            
+            @Override
+            public boolean isOpen() {
+                return delegate.isOpen();
+            }
+            
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+        };
+    }
+    
+    static byte[] drain(ByteSource source, int bufferSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int bytesRead;
+        while ((bytesRead = source.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+        return out.toByteArray();
+    }
+    
+    static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,137 @@
+package com.company.ingest.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the channel-backed ByteSource
+ */
+class ChannelByteSourceTest {
+
+    @Test
+    void testScatterReadsFromFileChannel() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(100_000);
+        Path file = Files.createTempFile("channel-", ".tmp");
+        Files.write(file, data);
+        
+        try (ByteSource source = new ChannelByteSource(FileChannel.open(file, StandardOpenOption.READ), 3, 4096)) {
+            assertArrayEquals(data, ByteSourceTest.drain(source, 1500));
+        }
+        
+        Files.delete(file);
+    }
+    
+    @Test
+    void testNonScatteringChannel() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(50_000);
+        
+        try (ByteSource source = new ChannelByteSource(Channels.newChannel(new ByteArrayInputStream(data)))) {
+            assertArrayEquals(data, ByteSourceTest.drain(source, 3000));
+        }
+    }
+    
+    @Test
+    void testPipeWithLargeAndSmallReads() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(80_000);
+        Pipe pipe = Pipe.open();
+        
+        Thread writer = new Thread(() -> {
+            try (Pipe.SinkChannel sink = pipe.sink()) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    sink.write(buffer);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ByteSource source = new ChannelByteSource(pipe.source(), 2, 4096)) {
+            // Alternate buffers smaller and larger than the segments to cover both paths
+            ByteBuffer small = ByteBuffer.allocate(700);
+            ByteBuffer large = ByteBuffer.allocateDirect(64 * 1024);
+            boolean useSmall = true;
+            while (true) {
+                ByteBuffer target = useSmall ? small : large;
+                target.clear();
+                if (source.read(target) == -1) {
+                    break;
+                }
+                target.flip();
+                byte[] copy = new byte[target.remaining()];
+                target.get(copy);
+                out.write(copy);
+                useSmall = !useSmall;
+            }
+        }
+        writer.join();
+        
+        assertArrayEquals(data, out.toByteArray());
+    }
+    
+    @Test
+    void testFileChannelTransferToAfterPartialRead() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(60_000);
+        Path file = Files.createTempFile("channel-", ".tmp");
+        Files.write(file, data);
+        
+        try (ByteSource source = new ChannelByteSource(FileChannel.open(file, StandardOpenOption.READ), 2, 4096)) {
+            assertTrue(source.supportsTransferTo());
+            
+            byte[] head = new byte[100];
+            assertEquals(100, source.read(head, 0, head.length));
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(head);
+            assertEquals(data.length - 100, source.transferTo(Channels.newChannel(out)));
+            assertArrayEquals(data, out.toByteArray());
+        }
+        
+        Files.delete(file);
+    }
+    
+    @Test
+    void testFileChannelTransferToFallsBackWhenTargetStalls() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(60_000);
+        Path file = Files.createTempFile("channel-", ".tmp");
+        Files.write(file, data);
+        
+        try (ByteSource source = new ChannelByteSource(FileChannel.open(file, StandardOpenOption.READ), 2, 4096)) {
+            byte[] head = new byte[100];
+            assertEquals(100, source.read(head, 0, head.length));
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(head);
+            assertEquals(data.length - 100, source.transferTo(ByteSourceTest.stalling(out)));
+            assertArrayEquals(data, out.toByteArray());
+            assertEquals(-1, source.read(head, 0, head.length), "Source should be at EOF");
+        }
+        
+        Files.delete(file);
+    }
+    
+    @Test
+    void testRejectsNonBlockingChannel() throws Exception {
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        
+        assertThrows(IllegalBlockingModeException.class, () -> new ChannelByteSource(pipe.source()));
+        
+        pipe.source().close();
+        pipe.sink().close();
+    }
+}
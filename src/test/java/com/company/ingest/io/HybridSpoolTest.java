@@ -0,0 +1,102 @@
+package com.company.ingest.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the memory-then-disk spool
+ */
+class HybridSpoolTest {
+
+    @Test
+    void testSmallUploadStaysInMemory() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(10_000);
+        
+        try (HybridSpool spool = new HybridSpool(64 * 1024, Long.MAX_VALUE, Optional.empty())) {
+            writeInChunks(spool, data, 3000);
+            
+            assertFalse(spool.isOnDisk());
+            assertEquals(data.length, spool.size());
+            try (ByteSource replay = spool.openReplay()) {
+                assertTrue(replay instanceof MemoryByteSource);
+                assertArrayEquals(data, ByteSourceTest.drain(replay, 4096));
+            }
+        }
+    }
+    
+    @Test
+    void testSpillsToDiskPastThreshold() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(100_000);
+        
+        try (HybridSpool spool = new HybridSpool(64 * 1024, Long.MAX_VALUE, Optional.empty())) {
+            writeInChunks(spool, data, 8192);
+            
+            assertTrue(spool.isOnDisk());
+            try (ByteSource replay = spool.openReplay()) {
+                assertTrue(replay instanceof FileByteSource);
+                assertArrayEquals(data, ByteSourceTest.drain(replay, 4096));
+            }
+        }
+    }
+    
+    @Test
+    void testLengthHintAboveThresholdGoesStraightToDisk() throws Exception {
+        try (HybridSpool spool = new HybridSpool(1024, Long.MAX_VALUE, Optional.of(1_000_000L))) {
+            assertTrue(spool.isOnDisk(), "No point buffering what is announced as too large");
+        }
+    }
+    
+    @Test
+    void testUnderstatedLengthHintStillSpills() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(50_000);
+        
+        try (HybridSpool spool = new HybridSpool(32 * 1024, Long.MAX_VALUE, Optional.of(10L))) {
+            writeInChunks(spool, data, 5000);
+            
+            assertTrue(spool.isOnDisk());
+            try (ByteSource replay = spool.openReplay()) {
+                assertArrayEquals(data, ByteSourceTest.drain(replay, 4096));
+            }
+        }
+    }
+    
+    @Test
+    void testOverstatedLengthHintDoesNotReserveMemory() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(20_000);
+        
+        // A hint just under the threshold used to lease the full gigabyte up front
+        try (HybridSpool spool = new HybridSpool(Long.MAX_VALUE, Long.MAX_VALUE, Optional.of(1L << 30))) {
+            writeInChunks(spool, data, 3000);
+            
+            assertFalse(spool.isOnDisk());
+            try (ByteSource replay = spool.openReplay()) {
+                assertArrayEquals(data, ByteSourceTest.drain(replay, 4096));
+            }
+        }
+    }
+    
+    @Test
+    void testCloseWithoutReplayReleasesEverything() throws Exception {
+        int leasesBefore = BufferPool.shared().getOutstandingLeases();
+        
+        HybridSpool spool = new HybridSpool(1024, Long.MAX_VALUE, Optional.empty());
+        writeInChunks(spool, ByteSourceTest.randomBytes(5000), 1000);
+        assertTrue(spool.isOnDisk());
+        spool.close();
+        
+        assertEquals(leasesBefore, BufferPool.shared().getOutstandingLeases());
+    }
+    
+    private static void writeInChunks(HybridSpool spool, byte[] data, int chunkSize) throws Exception {
+        for (int offset = 0; offset < data.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, data.length - offset);
+            ByteBuffer chunk = ByteBuffer.wrap(data, offset, length);
+            spool.write(chunk);
+            assertFalse(chunk.hasRemaining(), "Spool should consume the whole chunk");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.company.ingest.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the read-ahead decorator
+ */
+class PrefetchingByteSourceTest {
+
+    @Test
+    void testDeliversSameBytesInOrder() throws Exception {
+        byte[] data = ByteSourceTest.randomBytes(200_000);
+        
+        try (ByteSource source = new PrefetchingByteSource(
+                 new InputStreamByteSource(new ByteArrayInputStream(data)), 3, 4096)) {
+            assertArrayEquals(data, ByteSourceTest.drain(source, 1000));
+        }
+    }
+    
+    @Test
+    void testReadAheadIsBoundedByDepth() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        ByteSource counting = new InputStreamByteSource(new ByteArrayInputStream(new byte[1_000_000])) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                reads.incrementAndGet();
+                return super.read(buffer, offset, length);
+            }
+        };
+        
+        try (ByteSource source = new PrefetchingByteSource(counting, 2, 1024)) {
+            byte[] buffer = new byte[1024];
+            assertEquals(1024, source.read(buffer, 0, buffer.length));
+            
+            Thread.sleep(200); // give the reader every chance to run ahead
+            
+            // One chunk consumed plus at most two buffered; the reader blocks on a third
+            assertTrue(reads.get() <= 4, "Reader ran ahead unbounded: " + reads.get() + " reads");
+        }
+    }
+    
+    @Test
+    void testReaderFailureSurfacesAfterEarlierChunks() throws Exception {
+        InputStream failing = new InputStream() {
+            private int served = 0;
+            
+            @Override
+            public int read() throws IOException {
+                if (served++ < 100) {
+                    return 'x';
+                }
+                throw new IOException("connection reset");
+            }
+        };
+        
+        try (ByteSource source = new PrefetchingByteSource(new InputStreamByteSource(failing, 64), 2, 64)) {
+            byte[] buffer = new byte[64];
+            long total = 0;
+            IOException error = null;
+            try {
+                int bytesRead;
+                while ((bytesRead = source.read(buffer, 0, buffer.length)) != -1) {
+                    total += bytesRead;
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            
+            assertNotNull(error, "Reader failure should reach the consumer");
+            assertTrue(error.getMessage().contains("connection reset"));
+            assertEquals(100, total, "Bytes read before the failure are still delivered");
+        }
+    }
+    
+    @Test
+    void testCloseMidStreamReleasesBuffersAndDelegate() throws Exception {
+        int leasesBefore = BufferPool.shared().getOutstandingLeases();
+        AtomicInteger closes = new AtomicInteger();
+        ByteSource delegate = new InputStreamByteSource(new ByteArrayInputStream(new byte[1_000_000])) {
+            @Override
+            public void close() throws IOException {
+                closes.incrementAndGet();
+                super.close();
+            }
+        };
+        
+        ByteSource source = new PrefetchingByteSource(delegate, 4, 4096);
+        source.read(new byte[10], 0, 10);
+        source.close();
+        
+        assertEquals(1, closes.get());
+        assertEquals(leasesBefore, BufferPool.shared().getOutstandingLeases());
+        assertThrows(IOException.class, () -> source.read(new byte[10], 0, 10));
+    }
+}
@@ -0,0 +1,113 @@
+package com.company.ingest.manual;
+
+import com.company.ingest.core.Ingestor;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.IngestSink;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Throughput of fixed 8KB chunks vs adaptive chunk sizing across upload size profiles
+ *
+ * Run from IDE: Right-click → Run 'ChunkSizeBenchmark.main()'
+ * Run from Maven: mvn test-compile exec:java -Dexec.classpathScope=test 
+ *                     -Dexec.mainClass="com.company.ingest.manual.ChunkSizeBenchmark"
+ */
+public class ChunkSizeBenchmark {
+    
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("Chunk size benchmark (" + MEASURED_ROUNDS + " measured rounds per cell)\n");
+        System.out.printf("%-28s %14s %14s %8s%n", "Profile", "fixed 8KB", "adaptive", "ratio");
+        System.out.println("─".repeat(68));
+        
+        run("tiny (2KB x 2000)", 2 * 1024, 2000, false);
+        run("small (256KB x 200)", 256 * 1024, 200, false);
+        run("large (64MB x 2)", 64 * 1024 * 1024, 2, false);
+        run("large, 1460B reads (16MB)", 16 * 1024 * 1024, 1, true);
+    }
+    
+    private static void run(String profile, int uploadSize, int uploads, boolean trickle) throws Exception {
+        byte[] data = new byte[uploadSize];
+        new Random(1).nextBytes(data);
+        data[0] = 0x25; data[1] = 0x50; data[2] = 0x44; data[3] = 0x46; // %PDF
+        
+        Function<InputStream, ByteSource> fixed = InputStreamByteSource::new;
+        Function<InputStream, ByteSource> adaptive = in -> InputStreamByteSource.adaptive(in, 1024, 1024 * 1024);
+        
+        double fixedMbps = measure(data, uploads, trickle, fixed);
+        double adaptiveMbps = measure(data, uploads, trickle, adaptive);
+        
+        System.out.printf("%-28s %9.1f MB/s %9.1f MB/s %7.2fx%n", 
+                          profile, fixedMbps, adaptiveMbps, adaptiveMbps / fixedMbps);
+    }
+    
+    private static double measure(byte[] data, int uploads, boolean trickle, 
+                                  Function<InputStream, ByteSource> factory) throws Exception {
+        Ingestor ingestor = new Ingestor();
+        IngestConfig config = new IngestConfig(Long.MAX_VALUE, Set.of("application/pdf"));
+        UploadMeta meta = new UploadMeta("bench.pdf", "application/pdf", Optional.of((long) data.length));
+        DrainingSink sink = new DrainingSink();
+        
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < uploads; i++) {
+                InputStream in = new ByteArrayInputStream(data);
+                if (trickle) {
+                    in = new TrickleInputStream(in, 1460);
+                }
+                try (ByteSource source = factory.apply(in)) {
+                    ingestor.ingest(meta, config, source, sink);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                bestNanos = Math.min(bestNanos, elapsed);
+            }
+        }
+        
+        double megabytes = (double) data.length * uploads / (1024 * 1024);
+        return megabytes / (bestNanos / 1e9);
+    }
+    
+    /**
+     * Mimics a socket that never returns more than one packet per read
+     */
+    private static class TrickleInputStream extends FilterInputStream {
+        private final int maxRead;
+        
+        TrickleInputStream(InputStream in, int maxRead) {
+            super(in);
+            this.maxRead = maxRead;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, maxRead));
+        }
+    }
+    
+    private static class DrainingSink implements IngestSink {
+        @Override
+        public void persist(UploadMeta meta, IngestResult result, ByteSource data) throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            while (data.read(buffer, 0, buffer.length) != -1) {
+                // discard
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.company.ingest.manual;
+
+import com.company.ingest.core.IngestService;
+import com.company.ingest.core.Ingestor;
+import com.company.ingest.io.ByteSource;
+import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.IngestResult;
+import com.company.ingest.model.UploadMeta;
+import com.company.ingest.sink.IngestSink;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Memory held per idle in-flight upload: virtual-thread IngestService vs a platform thread per upload
+ *
+ * Every upload reads its first chunk and then stalls like a slow client.
+ * Once all of them are parked, heap (after GC) and process RSS are compared
+ * with the figures taken before the uploads started. Uploads declare no
+ * length, so each holds the chunk buffer, header buffer and an initial
+ * memory spool. Run with -Xms equal to -Xmx so heap growth does not show up
+ * as RSS.
+ *
+ * Run from IDE: Right-click → Run 'IdleUploadMemoryBenchmark.main()'
+ * Run from Maven: mvn test-compile exec:java -Dexec.classpathScope=test 
+ *                     -Dexec.mainClass="com.company.ingest.manual.IdleUploadMemoryBenchmark"
+ */
+public class IdleUploadMemoryBenchmark {
+    
+    private static final int VIRTUAL_UPLOADS = 20_000;
+    private static final int PLATFORM_UPLOADS = 2_000;
+    private static final int UPLOAD_SIZE = 64 * 1024;
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("Idle upload memory benchmark (" + (UPLOAD_SIZE >> 10) + "KB uploads, stalled after the first chunk)\n");
+        System.out.printf("%-34s %10s %14s %14s%n", "Engine", "uploads", "heap/upload", "RSS/upload");
+        System.out.println("─".repeat(76));
+        
+        ExecutorService platform = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Ingestor ingestor = new Ingestor(platform);
+            run("Ingestor on platform threads", PLATFORM_UPLOADS, 
+                (upload) -> ingestor.ingestAsync(upload.meta, upload.config, upload.source, upload.sink));
+        } finally {
+            platform.shutdown();
+        }
+        
+        try (IngestService service = new IngestService(64, 64)) {
+            run("IngestService (virtual threads)", VIRTUAL_UPLOADS, 
+                (upload) -> service.submit(upload.meta, upload.config, upload.source, upload.sink));
+        }
+    }
+    
+    private static void run(String name, int uploads, 
+                            Function<Upload, CompletableFuture<IngestResult>> submit) throws Exception {
+        byte[] data = new byte[UPLOAD_SIZE];
+        data[0] = 0x25; data[1] = 0x50; data[2] = 0x44; data[3] = 0x46;
+        IngestConfig config = new IngestConfig(1_000_000, Set.of("application/pdf"));
+        IngestSink sink = (meta, result, replay) -> { /* replay not measured */ };
+        
+        CountDownLatch parked = new CountDownLatch(uploads);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        long heapBefore = usedHeapAfterGc();
+        long rssBefore = residentSetSize();
+        
+        List<CompletableFuture<IngestResult>> futures = new ArrayList<>(uploads);
+        for (int i = 0; i < uploads; i++) {
+            InputStream slowClient = new ByteArrayInputStream(data) {
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (pos > 0) {
+                        parked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.read(b, off, len);
+                }
+            };
+            UploadMeta meta = new UploadMeta("idle.pdf", "application/pdf", Optional.empty());
+            futures.add(submit.apply(new Upload(meta, config, new InputStreamByteSource(slowClient), sink)));
+        }
+        parked.await();
+        
+        long heapPerUpload = (usedHeapAfterGc() - heapBefore) / uploads;
+        long rssPerUpload = (residentSetSize() - rssBefore) / uploads;
+        
+        release.countDown();
+        for (CompletableFuture<IngestResult> future : futures) {
+            future.join();
+        }
+        
+        System.out.printf("%-34s %10d %12.1fKB %12.1fKB%n", name, uploads, 
+            heapPerUpload / 1024.0, rssPerUpload / 1024.0);
+    }
+    
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+    
+    /**
+     * Resident set size from /proc on Linux, else 0
+     */
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (Exception e) {
+            // Not Linux
+        }
+        return 0;
+    }
+    
+    private static class Upload {
+        final UploadMeta meta;
+        final IngestConfig config;
+        final ByteSource source;
+        final IngestSink sink;
+        
+        Upload(UploadMeta meta, IngestConfig config, ByteSource source, IngestSink sink) {
+            this.meta = meta;
+            this.config = config;
+            this.source = source;
+            this.sink = sink;
+        }
+    }
+}
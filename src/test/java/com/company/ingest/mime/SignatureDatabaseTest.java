@@ -0,0 +1,112 @@
+package com.company.ingest.mime;
+
+import com.company.ingest.fixtures.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for loading, caching and installing signature databases
+ */
+class SignatureDatabaseTest {
+    
+    @TempDir
+    Path dir;
+    
+    @AfterEach
+    void restoreDefaults() {
+        MimeDetector.useRegistry(null);
+    }
+    
+    @Test
+    void testParsesOffsetsMasksPrioritiesAndRefiners() throws IOException {
+        SignatureRegistry registry = SignatureDatabase.parse(new StringReader("""
+            # comment
+            audio/wav        8   57415645
+            image/x-nibble   0   40     mask=f0
+            application/zip  0   504b0304
+            application/x-special 0 504b0304 priority=2
+            refine application/zip office-open-xml
+            """), "test.db");
+        
+        assertEquals(4, registry.getSignatures().size());
+        assertEquals(new Signature("image/x-nibble", 0, new byte[]{0x40}, new byte[]{(byte) 0xf0}, 0), 
+                     registry.getSignatures().get(1));
+        assertEquals("audio/wav", registry.detect(ascii("RIFF....WAVEfmt ")));
+        assertEquals("application/x-special", registry.detect(new byte[]{0x50, 0x4B, 0x03, 0x04}));
+        assertEquals("office-open-xml", registry.getRefiners().get("application/zip"));
+    }
+    
+    @Test
+    void testReportsTheLineOfAnError() {
+        IOException e = assertThrows(IOException.class, () -> SignatureDatabase.parse(new StringReader(
+            "application/pdf 0 25504446\nimage/png zero 89504e47\n"), "bad.db"));
+        assertTrue(e.getMessage().startsWith("bad.db:2:"), e.getMessage());
+        
+        assertThrows(IOException.class, () -> SignatureDatabase.parse(new StringReader(
+            "refine application/zip no-such-refiner\n"), "bad.db"));
+    }
+    
+    @Test
+    void testCompiledFormIsCachedAndReused() throws IOException {
+        Path source = dir.resolve("signatures.db");
+        Path cache = dir.resolve("cache");
+        Files.writeString(source, "application/pdf 0 25504446\nimage/x-test 2 abcd mask=fff0 priority=1\n");
+        
+        SignatureRegistry compiled = new SignatureDatabase(source, cache).load();
+        assertEquals(1, cacheFiles(cache).size());
+        
+        SignatureRegistry cached = new SignatureDatabase(source, cache).load();
+        assertEquals(compiled.getSignatures(), cached.getSignatures());
+        assertEquals(compiled.getStateCount(), cached.getStateCount());
+        assertEquals("image/x-test", cached.detect(new byte[]{0, 0, (byte) 0xab, (byte) 0xc7}));
+        assertEquals("application/pdf", cached.detect(TestDataFactory.createMockPdf()));
+        
+        // A corrupt cache is recompiled rather than trusted
+        Files.write(cacheFiles(cache).get(0), new byte[]{1, 2, 3});
+        assertEquals(compiled.getSignatures(), new SignatureDatabase(source, cache).load().getSignatures());
+        
+        // An edited file gets its own compiled form
+        Files.writeString(source, "image/jpeg 0 ffd8ff\n", StandardCharsets.UTF_8);
+        assertEquals("image/jpeg", new SignatureDatabase(source, cache).load().getSignatures().get(0).getMime());
+        assertEquals(2, cacheFiles(cache).size());
+    }
+    
+    @Test
+    void testInstallSwapsTheDetectorRegistry() throws IOException {
+        byte[] gif = ascii("GIF89a......");
+        assertEquals("application/octet-stream", MimeDetector.detect(gif));
+        
+        Path source = dir.resolve("signatures.db");
+        Files.writeString(source, "image/gif 0 474946383961\n");
+        SignatureRegistry before = MimeDetector.registry();
+        SignatureRegistry installed = new SignatureDatabase(source, dir.resolve("cache")).install();
+        
+        assertSame(installed, MimeDetector.registry());
+        assertEquals("image/gif", MimeDetector.detect(gif));
+        assertEquals("application/octet-stream", MimeDetector.detect(TestDataFactory.createMockPdf()));
+        
+        assertSame(installed, MimeDetector.useRegistry(before));
+        assertEquals("application/pdf", MimeDetector.detect(TestDataFactory.createMockPdf()));
+    }
+    
+    private static List<Path> cacheFiles(Path cache) throws IOException {
+        try (Stream<Path> files = Files.list(cache)) {
+            return files.filter(file -> file.toString().endsWith(".bin")).toList();
+        }
+    }
+    
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
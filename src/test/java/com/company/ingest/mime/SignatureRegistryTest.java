@@ -0,0 +1,153 @@
+package com.company.ingest.mime;
+
+import com.company.ingest.fixtures.TestDataFactory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compiled signature automaton
+ */
+class SignatureRegistryTest {
+    
+    @Test
+    void testDefaultsDetectTheBuiltInFormats() {
+        assertEquals("application/pdf", MimeDetector.detect(TestDataFactory.createMockPdf()));
+        assertEquals("image/png", MimeDetector.detect(TestDataFactory.createMockPng()));
+        assertEquals("application/vnd.openxmlformats-officedocument.wordprocessingml.document", 
+                     MimeDetector.detect(TestDataFactory.createMockDocx()));
+        assertEquals("image/jpeg", MimeDetector.detect(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00}));
+        assertEquals("application/zip", MimeDetector.detect(new byte[]{0x50, 0x4B, 0x05, 0x06, 0, 0}));
+        assertEquals("application/zip", MimeDetector.detect(new byte[]{0x50, 0x4B, 0x07, 0x08}));
+        
+        // Headers shorter than four bytes stay unknown, even a complete JPEG magic
+        assertEquals("application/octet-stream", MimeDetector.detect(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}));
+        assertEquals("application/octet-stream", MimeDetector.detect(new byte[]{0x50, 0x4B, 0x03, 0x05}));
+        assertEquals("application/octet-stream", MimeDetector.detect("hello".getBytes(StandardCharsets.US_ASCII)));
+    }
+    
+    @Test
+    void testDeeperSignaturesDoNotOverrideTheOriginalFormats() {
+        byte[] pdf = header(TestDataFactory.createMockPdf());
+        byte[] png = header(TestDataFactory.createMockPng());
+        byte[] jpeg = header(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0});
+        byte[] zip = header(new byte[]{0x50, 0x4B, 0x03, 0x04});
+        for (byte[] header : List.of(pdf, png, jpeg, zip)) {
+            System.arraycopy(ascii("ustar"), 0, header, 257, 5);
+        }
+        System.arraycopy(ascii("ftyp"), 0, jpeg, 4, 4);
+        System.arraycopy(ascii("ftyp"), 0, zip, 4, 4);
+        
+        assertEquals("application/pdf", MimeDetector.detect(pdf));
+        assertEquals("image/png", MimeDetector.detect(png));
+        assertEquals("image/jpeg", MimeDetector.detect(jpeg));
+        assertEquals("application/zip", MimeDetector.detect(zip));
+        
+        // Without an offset-0 format in front, the deeper signatures still apply
+        byte[] tar = header(ascii("file.txt"));
+        System.arraycopy(ascii("ustar"), 0, tar, 257, 5);
+        assertEquals("application/x-tar", MimeDetector.detect(tar));
+        byte[] mp4 = header(new byte[]{0, 0, 0, 0x18});
+        System.arraycopy(ascii("ftypisom"), 0, mp4, 4, 8);
+        assertEquals("video/mp4", MimeDetector.detect(mp4));
+    }
+    
+    @Test
+    void testOffsetsAndLongestMatch() {
+        SignatureRegistry registry = SignatureRegistry.builder()
+            .add(Signature.of("application/x-short", 0, "4142"))
+            .add(Signature.of("application/x-long", 0, "41424344"))
+            .add(Signature.of("audio/x-offset", 4, "57415645"))
+            .add(Signature.of("application/x-first", 0, "5858"))
+            .add(Signature.of("application/x-second", 0, "5858"))
+            .build();
+        
+        assertEquals("application/x-long", registry.detect(ascii("ABCDxxxx")));
+        assertEquals("application/x-short", registry.detect(ascii("ABCxxxxx")));
+        assertEquals("audio/x-offset", registry.detect(ascii("RIFFWAVE")));
+        assertEquals("audio/x-offset", registry.detect(ascii("ABxxWAVE")), "Longer offset match beats the short prefix");
+        assertEquals("application/x-first", registry.detect(ascii("XXyy")));
+        assertNull(registry.detect(ascii("zzzzzzzz")));
+        assertEquals(8, registry.getMaxSignatureEnd());
+    }
+    
+    @Test
+    void testMasksAndPriorities() {
+        SignatureRegistry registry = SignatureRegistry.builder()
+            .add(new Signature("application/x-nibble", 0, new byte[]{0x40, 0x00}, new byte[]{(byte) 0xf0, 0x00}, 0))
+            .add(new Signature("application/x-long", 0, ascii("ABCDEF"), null, 0))
+            .add(new Signature("application/x-urgent", 0, ascii("AB"), null, 5))
+            .build();
+        
+        assertEquals("application/x-nibble", registry.detect(ascii("Gz")));
+        assertEquals("application/x-nibble", registry.detect(ascii("Ozzz")));
+        assertNull(registry.detect(ascii("Pz")));
+        assertEquals("application/x-urgent", registry.detect(ascii("ABCDEF")), "Priority beats length");
+    }
+    
+    @Test
+    void testManySignaturesMatchLinearScan() {
+        Random random = new Random(21);
+        List<Signature> signatures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            byte[] magic = new byte[2 + random.nextInt(6)];
+            random.nextBytes(magic);
+            magic[0] = (byte) random.nextInt(8); // share prefixes so paths overlap
+            byte[] mask = null;
+            if (i % 10 == 0) {
+                mask = new byte[magic.length];
+                random.nextBytes(mask);
+                mask[0] = (byte) 0xff;
+            }
+            signatures.add(new Signature("application/x-type-" + i, random.nextInt(5), magic, mask, random.nextInt(3)));
+        }
+        SignatureRegistry registry = SignatureRegistry.builder().addAll(signatures).build();
+        
+        for (Signature signature : signatures) {
+            byte[] header = new byte[16];
+            random.nextBytes(header);
+            System.arraycopy(signature.getMagic(), 0, header, signature.getOffset(), signature.getMagic().length);
+            assertTrue(signature.matches(header));
+            assertEquals(linearScan(signatures, header), registry.match(header), signature.toString());
+        }
+        for (int i = 0; i < 20_000; i++) {
+            byte[] header = new byte[12];
+            random.nextBytes(header);
+            header[random.nextInt(5)] = (byte) random.nextInt(8);
+            assertEquals(linearScan(signatures, header), registry.match(header));
+        }
+    }
+    
+    /**
+     * Reference semantics: highest priority, then longest, then first registered
+     */
+    private static Signature linearScan(List<Signature> signatures, byte[] header) {
+        Signature best = null;
+        for (Signature signature : signatures) {
+            if (signature.matches(header) && (best == null 
+                    || signature.getPriority() > best.getPriority()
+                    || signature.getPriority() == best.getPriority() && signature.getEnd() > best.getEnd())) {
+                best = signature;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 512-byte header starting with the given bytes
+     */
+    private static byte[] header(byte[] start) {
+        byte[] header = new byte[512];
+        System.arraycopy(start, 0, header, 0, start.length);
+        return header;
+    }
+    
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
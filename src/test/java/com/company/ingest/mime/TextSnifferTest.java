@@ -0,0 +1,162 @@
+package com.company.ingest.mime;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the streaming text, CSV and JSON sniffer
+ */
+class TextSnifferTest {
+    
+    @Test
+    void testClassifiesTextFormats() {
+        assertEquals(TextSniffer.TEXT, sniff("Dear reader,\nthis is a letter.\n\tRegards\r\n"));
+        assertEquals(TextSniffer.JSON, sniff("{\"id\": 1, \"tags\": [\"a\", \"b\"]}\n"));
+        assertEquals(TextSniffer.JSON, sniff("  [1, 2, 3]  "));
+        assertEquals(TextSniffer.CSV, sniff("id,name,price\n1,\"Widget, large\",9.99\n2,Gadget,4.50\n"));
+        assertEquals(TextSniffer.CSV, sniff("id;name\n1;a\n2;b"));
+        assertEquals(TextSniffer.CSV, sniff("id\tname\n1\ta\n"));
+        
+        assertEquals(TextSniffer.TEXT, sniff("{ not json"), "Unclosed object");
+        assertEquals(TextSniffer.TEXT, sniff("{word} and {word}"), "Braces, but no member name");
+        assertEquals(TextSniffer.TEXT, sniff("one, two\nthree\n"), "Lines disagree on delimiters");
+        assertEquals(TextSniffer.TEXT, sniff("a,b\n"), "A single line is not a table");
+    }
+    
+    @Test
+    void testAcceptsUtf8AndByteOrderMarks() {
+        assertEquals(TextSniffer.TEXT, sniff("Grüße, 日本語 and emoji 😀"));
+        assertEquals(TextSniffer.JSON, sniff("\uFEFF{\"bom\": true}"));
+        
+        byte[] utf16le = "\uFEFFhi 😀\r\n".getBytes(StandardCharsets.UTF_16LE);
+        byte[] utf16be = "\uFEFFhi 😀\r\n".getBytes(StandardCharsets.UTF_16BE);
+        for (int chunkSize : new int[]{1, 3, utf16le.length}) {
+            assertEquals(TextSniffer.TEXT, sniff(utf16le, chunkSize), "UTF-16LE");
+            assertEquals(TextSniffer.TEXT, sniff(utf16be, chunkSize), "UTF-16BE");
+        }
+    }
+    
+    @Test
+    void testUtf16BomDoesNotExemptBinary() {
+        byte[] controls = {(byte) 0xFF, (byte) 0xFE, 0, 0, 1, 2, 3, (byte) 0x80, (byte) 0x9F, 0};
+        assertNull(sniff(controls));
+        assertFalse(TextSniffer.couldBeText(controls, controls.length));
+        
+        byte[] noise = new byte[4096];
+        new Random(16).nextBytes(noise);
+        noise[0] = (byte) 0xFE;
+        noise[1] = (byte) 0xFF;
+        assertNull(sniff(noise), "Unpaired surrogates");
+        
+        byte[] lone = "\uFEFFab".getBytes(StandardCharsets.UTF_16LE);
+        assertNull(sniff(Arrays.copyOf(lone, lone.length - 1)), "Odd byte count");
+        assertNull(sniff(new byte[]{(byte) 0xFE, (byte) 0xFF, 0, 'a', (byte) 0xD8, 0x3D}), "Unfinished surrogate pair");
+    }
+    
+    @Test
+    void testRejectsBinaryAndInvalidUtf8() {
+        assertNull(sniff(new byte[0]));
+        assertNull(sniff(new byte[4096]), "NUL bytes are controls");
+        assertNull(sniff(new byte[]{'a', 'b', (byte) 0xC0, (byte) 0x80}), "Overlong NUL");
+        assertNull(sniff(new byte[]{'a', (byte) 0xED, (byte) 0xA0, (byte) 0x80}), "Encoded surrogate");
+        assertNull(sniff(new byte[]{'a', (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80}), "Beyond U+10FFFF");
+        assertNull(sniff(new byte[]{'a', 'b', (byte) 0xE2, (byte) 0x82}), "Truncated sequence");
+        
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        assertNull(sniff(png));
+        assertFalse(TextSniffer.couldBeText(png, png.length));
+    }
+    
+    @Test
+    void testSettlesOnlyOnBinary() {
+        TextSniffer sniffer = new TextSniffer();
+        sniffer.update(ByteBuffer.wrap("plain words\n".repeat(100).getBytes(StandardCharsets.UTF_8)));
+        assertFalse(sniffer.isSettled(), "Text can still turn out binary");
+        
+        sniffer.update(ByteBuffer.wrap(new byte[]{'x', 0, (byte) 0xFF}));
+        assertTrue(sniffer.isSettled());
+        assertNull(sniffer.mimeType());
+    }
+    
+    @Test
+    void testControlCharactersAreCountedToTheLimit() {
+        // One control character per hundred bytes is at the limit, two are over it
+        assertNotNull(sniff(("x".repeat(95) + "\t\n\r\f\u001B").repeat(50)), "Whitespace is not counted");
+        assertNull(sniff(("x".repeat(98) + "\u001B\u000B").repeat(50)));
+        assertNull(sniff(("x".repeat(98) + "\u007F\u001F").repeat(50)));
+    }
+    
+    @Test
+    void testPrefixMayEndInsideASequence() {
+        byte[] euro = "total: 5 €".getBytes(StandardCharsets.UTF_8);
+        assertTrue(TextSniffer.couldBeText(euro, euro.length - 1));
+        assertFalse(TextSniffer.couldBeText(euro, 0));
+    }
+    
+    @Test
+    void testAgreesWithJdkDecoderAcrossChunkSplits() {
+        byte[] alphabet = {'a', 'b', ' ', '\n', (byte) 0xC3, (byte) 0xA9, (byte) 0xE2, (byte) 0x82, (byte) 0xAC,
+            (byte) 0xE0, (byte) 0xED, (byte) 0xA0, (byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80,
+            (byte) 0xF4, (byte) 0x8F, (byte) 0x90, (byte) 0xBF, (byte) 0xC0, (byte) 0xFF};
+        Random random = new Random(42);
+        
+        for (int trial = 0; trial < 2_000; trial++) {
+            byte[] data = new byte[1 + random.nextInt(64)];
+            for (int i = 0; i < data.length; i++) {
+                // Mostly letters so ASCII words reach the fast path
+                data[i] = random.nextInt(3) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'x';
+            }
+            boolean valid = isUtf8(data);
+            
+            for (int chunkSize : new int[]{1, 3, 8, 13, data.length}) {
+                assertEquals(valid, sniff(data, chunkSize) != null,
+                    () -> HexFormat.of().formatHex(data) + " in chunks of " + chunkSize);
+            }
+        }
+    }
+    
+    private static String sniff(String text) {
+        return sniff(text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String sniff(byte[] data) {
+        return sniff(data, data.length);
+    }
+    
+    /**
+     * Feed the data in chunks through a direct buffer with a non-zero position, as the pass does
+     */
+    private static String sniff(byte[] data, int chunkSize) {
+        TextSniffer sniffer = new TextSniffer();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(chunkSize, 1) + 5);
+        for (int offset = 0; offset < data.length; offset += chunkSize) {
+            int n = Math.min(chunkSize, data.length - offset);
+            buffer.clear().position(5);
+            buffer.put(data, offset, n).flip().position(5);
+            sniffer.update(buffer);
+            assertEquals(5, buffer.position(), "Position is left alone");
+        }
+        return sniffer.mimeType();
+    }
+    
+    private static boolean isUtf8(byte[] data) {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(data));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.company.ingest.mime;
+
+import com.company.ingest.fixtures.TestDataFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the streaming ZIP local-header inspector
+ */
+class ZipInspectorTest {
+    
+    @Test
+    void testTellsOfficeFormatsApart() throws IOException {
+        assertEquals(ZipInspector.DOCX, inspect(zip("[Content_Types].xml", "_rels/.rels", "word/document.xml")));
+        assertEquals(ZipInspector.XLSX, inspect(zip("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml")));
+        assertEquals(ZipInspector.PPTX, inspect(zip("[Content_Types].xml", "_rels/.rels", "ppt/presentation.xml")));
+        assertEquals(ZipInspector.ZIP, inspect(zip("readme.txt", "data/values.csv")));
+    }
+    
+    @Test
+    void testReadsOdfMimetypeEntry() throws IOException {
+        byte[] odt = zipWithMimetype("application/vnd.oasis.opendocument.text", "content.xml", "META-INF/manifest.xml");
+        assertEquals("application/vnd.oasis.opendocument.text", inspect(odt));
+        assertEquals(ZipInspector.EPUB, inspect(zipWithMimetype(ZipInspector.EPUB, "OEBPS/content.opf")));
+    }
+    
+    @Test
+    void testIgnoresMimetypeEntryOutsideOdfAndEpub() throws IOException {
+        assertEquals(ZipInspector.ZIP, inspect(zipWithMimetype("image/png", "payload.exe")));
+        assertEquals(ZipInspector.ZIP, inspect(zipWithMimetype("application/pdf", "payload.exe")));
+        assertEquals(ZipInspector.ZIP, inspect(zipWithMimetype("application/vnd.oasis.opendocument.", "x")));
+    }
+    
+    @Test
+    void testRecognisesJar() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        try (JarOutputStream out = new JarOutputStream(bytes, manifest)) {
+            putEntry(out, "com/example/Main.class");
+        }
+        
+        assertEquals(ZipInspector.JAR, inspect(bytes.toByteArray()));
+    }
+    
+    @Test
+    void testMarkersFoundPastTheHeaderWindow() throws IOException {
+        // Large, incompressible first entry pushes word/ far beyond 512 bytes
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            byte[] noise = new byte[200_000];
+            new Random(23).nextBytes(noise);
+            out.write(noise);
+            out.closeEntry();
+            putEntry(out, "word/document.xml");
+        }
+        byte[] docx = bytes.toByteArray();
+        
+        ZipInspector inspector = new ZipInspector();
+        for (int i = 0; i < docx.length; i += 7) {
+            inspector.update(ByteBuffer.wrap(docx, i, Math.min(7, docx.length - i)));
+        }
+        assertEquals(ZipInspector.DOCX, inspector.mimeType());
+        assertEquals(List.of("[Content_Types].xml", "word/document.xml"), inspector.entryNames());
+    }
+    
+    @Test
+    void testNameBudgetBoundsRecordedNames() throws IOException {
+        String[] names = new String[200];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "xl/worksheets/sheet" + i + ".xml";
+        }
+        names[0] = "[Content_Types].xml";
+        
+        ZipInspector inspector = new ZipInspector(256);
+        inspector.update(ByteBuffer.wrap(zip(names)));
+        
+        assertTrue(inspector.isTruncated());
+        assertTrue(inspector.entryNames().stream().mapToInt(String::length).sum() <= 256);
+        assertEquals(ZipInspector.XLSX, inspector.mimeType());
+    }
+    
+    @Test
+    void testInconclusiveForNonZipAndTruncatedInput() throws IOException {
+        assertNull(inspect(TestDataFactory.createMockPdf()));
+        assertNull(inspect(TestDataFactory.createMockDocx()), "Header alone is left to the signature refiner");
+        
+        byte[] plain = zip("a.txt", "b.txt");
+        byte[] truncated = new byte[40];
+        System.arraycopy(plain, 0, truncated, 0, truncated.length);
+        assertNull(inspect(truncated));
+    }
+    
+    @Test
+    void testSettlesOnceLaterEntriesCannotChangeTheType() throws IOException {
+        byte[] docx = zip("[Content_Types].xml", "word/document.xml", "xl/workbook.xml", "media/big.bin");
+        ZipInspector inspector = new ZipInspector();
+        int fed = 0;
+        while (!inspector.isSettled() && fed < docx.length) {
+            inspector.update(ByteBuffer.wrap(docx, fed++, 1));
+        }
+        assertTrue(fed < docx.length / 2, "DOCX markers settle before the rest of the archive");
+        assertEquals(ZipInspector.DOCX, inspector.mimeType());
+        
+        ZipInspector xlsx = new ZipInspector();
+        byte[] data = zip("[Content_Types].xml", "xl/workbook.xml", "word/document.xml");
+        int wordEntry = new String(data, StandardCharsets.ISO_8859_1).indexOf("word/document.xml");
+        xlsx.update(ByteBuffer.wrap(data, 0, wordEntry));
+        assertFalse(xlsx.isSettled(), "A later word/ entry would still make it DOCX");
+        
+        ZipInspector pdf = new ZipInspector();
+        pdf.update(ByteBuffer.wrap(TestDataFactory.createMockPdf(), 0, 4));
+        assertTrue(pdf.isSettled());
+    }
+    
+    @Test
+    void testSampleDocx() throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("test-files/sample.docx")) {
+            assertNotNull(in);
+            assertEquals(ZipInspector.DOCX, inspect(in.readAllBytes()));
+        }
+    }
+    
+    private static String inspect(byte[] data) {
+        ZipInspector inspector = new ZipInspector();
+        inspector.update(ByteBuffer.wrap(data));
+        return inspector.mimeType();
+    }
+    
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                putEntry(out, name);
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Archive whose first entry is a stored {@code mimetype}, as ODF and EPUB write it
+     */
+    private static byte[] zipWithMimetype(String value, String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            byte[] mimetype = value.getBytes(StandardCharsets.US_ASCII);
+            ZipEntry entry = new ZipEntry("mimetype");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(mimetype);
+            out.closeEntry();
+            for (String name : names) {
+                putEntry(out, name);
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static void putEntry(ZipOutputStream out, String name) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(("<content of " + name + "/>").repeat(20).getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,95 @@
+package com.company.ingest.sink;
+
+import com.company.ingest.core.Ingestor;
+import com.company.ingest.dedup.InMemoryDedupIndex;
+import com.company.ingest.fixtures.MockIngestSink;
+import com.company.ingest.fixtures.TestDataFactory;
+import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.UploadMeta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for skipping persistence of known content
+ */
+class DuplicateAwareSinkTest {
+    
+    @TempDir
+    Path storeDir;
+    
+    private final IngestConfig config = new IngestConfig(1_000_000, Set.of("application/pdf"));
+    
+    @Test
+    void testRepeatedUploadIsNotReplayed() throws Exception {
+        byte[] pdf = TestDataFactory.createMockPdf();
+        MockIngestSink mock = new MockIngestSink();
+        DuplicateAwareSink sink = new DuplicateAwareSink(mock, new InMemoryDedupIndex(100));
+        
+        ingest(pdf, sink);
+        assertEquals(pdf.length, mock.getBytesConsumed());
+        assertEquals(0, mock.getAlreadyStoredCount());
+        
+        ingest(pdf, sink);
+        assertEquals(0, mock.getBytesConsumed(), "Duplicate should not be replayed");
+        assertEquals(1, mock.getAlreadyStoredCount());
+        assertTrue(mock.getLastResult().isOk());
+    }
+    
+    @Test
+    void testRejectedUploadsAreNotRecorded() throws Exception {
+        byte[] png = TestDataFactory.createMockPng();
+        MockIngestSink mock = new MockIngestSink();
+        DuplicateAwareSink sink = new DuplicateAwareSink(mock, new InMemoryDedupIndex(100));
+        
+        ingest(png, sink);
+        ingest(png, sink);
+        
+        assertFalse(mock.getLastResult().isOk());
+        assertEquals(0, mock.getAlreadyStoredCount());
+    }
+    
+    @Test
+    void testStreamingDuplicateIsAborted() throws Exception {
+        byte[] pdf = TestDataFactory.createMockPdf();
+        MockIngestSink mock = new MockIngestSink(true);
+        DuplicateAwareSink sink = new DuplicateAwareSink(mock, new InMemoryDedupIndex(100));
+        
+        ingest(pdf, sink);
+        assertTrue(mock.isCommitted());
+        
+        ingest(pdf, sink);
+        assertTrue(mock.isAborted());
+        assertFalse(mock.isCommitted());
+        assertEquals(1, mock.getAlreadyStoredCount());
+    }
+    
+    @Test
+    void testFileSystemSinkKeepsOneCopy() throws Exception {
+        byte[] pdf = TestDataFactory.createMockPdf();
+        DuplicateAwareSink sink = new DuplicateAwareSink(
+            new FileSystemIngestSink(storeDir), new InMemoryDedupIndex(100));
+        
+        ingest(pdf, sink);
+        ingest(pdf, sink);
+        
+        try (Stream<Path> files = Files.list(storeDir)) {
+            assertEquals(1, files.count(), "Aborted duplicate should leave no partial file");
+        }
+    }
+    
+    private void ingest(byte[] data, IngestSink sink) throws Exception {
+        new Ingestor().ingest(
+            new UploadMeta("doc.pdf", "application/pdf", Optional.of((long) data.length)),
+            config, new InputStreamByteSource(new ByteArrayInputStream(data)), sink);
+    }
+}
@@ -0,0 +1,132 @@
+package com.company.ingest.sink;
+
+import com.company.ingest.core.Ingestor;
+import com.company.ingest.fixtures.TestDataFactory;
+import com.company.ingest.io.InputStreamByteSource;
+import com.company.ingest.model.IngestConfig;
+import com.company.ingest.model.UploadMeta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the directory-backed sink
+ */
+class FileSystemIngestSinkTest {
+    
+    @TempDir
+    Path storeDir;
+    
+    @Test
+    void testAcceptedUploadIsStoredByZeroCopyTransfer() throws Exception {
+        byte[] pdfData = TestDataFactory.createMockPdf();
+        FileSystemIngestSink sink = new FileSystemIngestSink(storeDir, false);
+        
+        new Ingestor().ingest(
+            new UploadMeta("test.pdf", "application/pdf", Optional.of((long) pdfData.length)),
+            IngestConfig.builder(1_000_000, Set.of("application/pdf"))
+                .spoolMemoryThreshold(0) // force a temp file spool
+                .build(),
+            new InputStreamByteSource(new ByteArrayInputStream(pdfData)),
+            sink
+        );
+        
+        assertEquals(1, sink.getZeroCopyTransfers(), "Spool file replay should use transferTo");
+        try (Stream<Path> files = Files.list(storeDir)) {
+            Path stored = files.findFirst().orElseThrow();
+            assertArrayEquals(pdfData, Files.readAllBytes(stored));
+        }
+    }
+    
+    @Test
+    void testMemorySpooledUploadIsStored() throws Exception {
+        byte[] pdfData = TestDataFactory.createMockPdf();
+        FileSystemIngestSink sink = new FileSystemIngestSink(storeDir, false);
+        
+        new Ingestor().ingest(
+            new UploadMeta("test.pdf", "application/pdf", Optional.of((long) pdfData.length)),
+            new IngestConfig(1_000_000, Set.of("application/pdf")),
+            new InputStreamByteSource(new ByteArrayInputStream(pdfData)),
+            sink
+        );
+        
+        assertEquals(0, sink.getZeroCopyTransfers(), "Memory replay has no file to transfer from");
+        try (Stream<Path> files = Files.list(storeDir)) {
+            Path stored = files.findFirst().orElseThrow();
+            assertArrayEquals(pdfData, Files.readAllBytes(stored));
+        }
+    }
+    
+    @Test
+    void testRejectedUploadIsNotStored() throws Exception {
+        byte[] pdfData = TestDataFactory.createMockPdf();
+        FileSystemIngestSink sink = new FileSystemIngestSink(storeDir);
+        
+        new Ingestor().ingest(
+            new UploadMeta("test.pdf", "application/pdf", Optional.empty()),
+            new IngestConfig(1_000_000, Set.of("image/png")),
+            new InputStreamByteSource(new ByteArrayInputStream(pdfData)),
+            sink
+        );
+        
+        try (Stream<Path> files = Files.list(storeDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+    
+    @Test
+    void testStreamedUploadIsStoredWithoutSpool() throws Exception {
+        byte[] pdfData = TestDataFactory.createMockPdf();
+        FileSystemIngestSink sink = new FileSystemIngestSink(storeDir);
+        
+        new Ingestor().ingest(
+            new UploadMeta("test.pdf", "application/pdf", Optional.of((long) pdfData.length)),
+            IngestConfig.builder(1_000_000, Set.of("application/pdf"))
+                .spoolMemoryThreshold(0)
+                .build(),
+            new InputStreamByteSource(new ByteArrayInputStream(pdfData)),
+            sink
+        );
+        
+        assertEquals(0, sink.getZeroCopyTransfers(), "Streamed upload should not be replayed");
+        try (Stream<Path> files = Files.list(storeDir)) {
+            Path stored = files.findFirst().orElseThrow();
+            assertEquals(sha256Hex(pdfData), stored.getFileName().toString());
+            assertArrayEquals(pdfData, Files.readAllBytes(stored));
+        }
+    }
+    
+    @Test
+    void testStreamedRejectedUploadLeavesNoPartialFile() throws Exception {
+        byte[] pdfData = TestDataFactory.createMockPdf();
+        FileSystemIngestSink sink = new FileSystemIngestSink(storeDir);
+        
+        new Ingestor().ingest(
+            new UploadMeta("test.pdf", "application/pdf", Optional.of(pdfData.length + 10L)),
+            new IngestConfig(1_000_000, Set.of("application/pdf")),
+            new InputStreamByteSource(new ByteArrayInputStream(pdfData)),
+            sink
+        );
+        
+        try (Stream<Path> files = Files.list(storeDir)) {
+            assertEquals(0, files.count(), "Aborted upload should be cleaned up");
+        }
+    }
+    
+    private static String sha256Hex(byte[] data) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}